@@ -0,0 +1,115 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.benchmarks;
+
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.NettyServerBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.stream.app.grpc.processor.CompressionClientInterceptor;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorGrpc;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos;
+import org.springframework.cloud.stream.app.grpc.support.ProtobufMessageBuilder;
+import org.springframework.cloud.stream.app.grpc.test.support.ProcessorServer;
+
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks blocking calls to a {@link ProcessorServer.ProcessorService} over a Netty localhost connection with each
+ * compression codec. The in-process transport does not serialize messages, so it cannot be used to measure
+ * compression. The payload is text like, so it compresses.
+ *
+ * @author David Turanski
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmarks {
+
+	private static final String[] WORDS = { "alpha", "bravo", "charlie", "delta", "echo", "foxtrot", "golf", "hotel" };
+
+	@Param({ "identity", "gzip", "snappy" })
+	private String codec;
+
+	@Param({ "100", "1024", "65536", "1048576" })
+	private int payloadSize;
+
+	private Server server;
+
+	private ManagedChannel channel;
+
+	private ProcessorGrpc.ProcessorBlockingStub processorStub;
+
+	private ProcessorProtos.Message message;
+
+	@Setup
+	public void setUp() throws Exception {
+		server = NettyServerBuilder.forAddress(new InetSocketAddress("localhost", 0))
+			.addService(new ProcessorServer.ProcessorService())
+			.compressorRegistry(CompressionClientInterceptor.compressorRegistry())
+			.decompressorRegistry(CompressionClientInterceptor.decompressorRegistry())
+			.maxMessageSize(Integer.MAX_VALUE)
+			.build()
+			.start();
+
+		channel = NettyChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext(true)
+			.compressorRegistry(CompressionClientInterceptor.compressorRegistry())
+			.decompressorRegistry(CompressionClientInterceptor.decompressorRegistry())
+			.maxInboundMessageSize(Integer.MAX_VALUE)
+			.build();
+
+		processorStub = ProcessorGrpc.newBlockingStub(
+			ClientInterceptors.intercept(channel, new CompressionClientInterceptor(codec, 0)));
+
+		StringBuilder payload = new StringBuilder(payloadSize + 8);
+		Random random = new Random(0);
+		while (payload.length() < payloadSize) {
+			payload.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+		}
+		payload.setLength(payloadSize);
+		message = new ProtobufMessageBuilder().withPayload(payload.toString().getBytes()).build();
+	}
+
+	@TearDown
+	public void tearDown() throws InterruptedException {
+		channel.shutdown().awaitTermination(1, TimeUnit.SECONDS);
+		server.shutdown().awaitTermination(1, TimeUnit.SECONDS);
+	}
+
+	@Benchmark
+	public ProcessorProtos.Message process() {
+		return processorStub.process(message);
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.benchmarks;
+
+import function.Function;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos;
+import org.springframework.cloud.stream.app.grpc.support.MessageUtils;
+import org.springframework.cloud.stream.app.grpc.support.ProtobufMessageBuilder;
+import org.springframework.cloud.stream.app.grpc.support.RiffMessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the conversion between Spring messages and protobuf messages performed for every message in every stub
+ * mode. Run with {@code -prof gc} to measure allocation per operation.
+ *
+ * @author David Turanski
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageConversionBenchmarks {
+
+	@Param({ "100", "1024", "65536", "1048576" })
+	private int payloadSize;
+
+	@Param({ "0", "10", "50" })
+	private int headerCount;
+
+	private Message<byte[]> message;
+
+	private ProcessorProtos.Message protobufMessage;
+
+	private Function.Message riffMessage;
+
+	@Setup
+	public void setUp() {
+		byte[] payload = new byte[payloadSize];
+		new Random(0).nextBytes(payload);
+
+		MessageBuilder<byte[]> messageBuilder = MessageBuilder.withPayload(payload)
+			.setHeader(MessageHeaders.CONTENT_TYPE, "application/octet-stream");
+		for (int i = 0; i < headerCount; i++) {
+			messageBuilder.setHeader("header-" + i, "value-" + i);
+		}
+		message = messageBuilder.build();
+
+		protobufMessage = new ProtobufMessageBuilder().fromMessage(message).build();
+		riffMessage = new RiffMessageBuilder().fromMessage(message).build();
+	}
+
+	@Benchmark
+	public ProcessorProtos.Message protobufFromMessage() {
+		return new ProtobufMessageBuilder().fromMessage(message).build();
+	}
+
+	@Benchmark
+	public ProcessorProtos.Message protobufFromMessageZeroCopy() {
+		return new ProtobufMessageBuilder().zeroCopy(true).fromMessage(message).build();
+	}
+
+	@Benchmark
+	public ProtobufMessageBuilder protobufWithHeaders() {
+		return new ProtobufMessageBuilder().withHeaders(message.getHeaders());
+	}
+
+	@Benchmark
+	public Function.Message riffFromMessage() {
+		return new RiffMessageBuilder().fromMessage(message).build();
+	}
+
+	@Benchmark
+	public Function.Message riffFromMessageZeroCopy() {
+		return new RiffMessageBuilder().zeroCopy(true).fromMessage(message).build();
+	}
+
+	@Benchmark
+	public RiffMessageBuilder riffWithHeaders() {
+		return new RiffMessageBuilder().withHeaders(message.getHeaders());
+	}
+
+	@Benchmark
+	public Message<byte[]> protobufToMessage() {
+		return MessageUtils.toMessage(protobufMessage);
+	}
+
+	@Benchmark
+	public Message<byte[]> protobufToMessageZeroCopy() {
+		return MessageUtils.toMessage(protobufMessage, true);
+	}
+
+	@Benchmark
+	public Message<byte[]> riffToMessage() {
+		return MessageUtils.toMessage(riffMessage);
+	}
+
+	@Benchmark
+	public Message<byte[]> riffToMessageZeroCopy() {
+		return MessageUtils.toMessage(riffMessage, true);
+	}
+}
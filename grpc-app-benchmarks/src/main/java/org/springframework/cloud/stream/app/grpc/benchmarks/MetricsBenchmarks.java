@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.benchmarks;
+
+import io.grpc.Channel;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cloud.stream.app.grpc.processor.GrpcMessageConverter;
+import org.springframework.cloud.stream.app.grpc.processor.GrpcProperties;
+import org.springframework.cloud.stream.app.grpc.processor.MetricsClientInterceptor;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorGrpc;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos;
+import org.springframework.cloud.stream.app.grpc.test.support.ProcessorServer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the processor metrics by running a blocking call, including message conversion, on the
+ * in-process transport with metrics enabled and disabled. The difference is the per message cost of metrics.
+ *
+ * @author David Turanski
+ **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmarks {
+
+	@Param({ "false", "true" })
+	private boolean metrics;
+
+	private Server server;
+
+	private ManagedChannel channel;
+
+	private ProcessorGrpc.ProcessorBlockingStub processorStub;
+
+	private GrpcMessageConverter messageConverter;
+
+	private Message<byte[]> message;
+
+	@Setup
+	public void setUp() throws Exception {
+		String name = MetricsBenchmarks.class.getName();
+		server = InProcessServerBuilder.forName(name).directExecutor()
+			.addService(new ProcessorServer.ProcessorService()).build().start();
+		channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		Channel processorChannel = metrics ?
+			ClientInterceptors.intercept(channel, new MetricsClientInterceptor(meterRegistry, "blocking")) : channel;
+		processorStub = ProcessorGrpc.newBlockingStub(processorChannel);
+		messageConverter = new GrpcMessageConverter(new GrpcProperties(), metrics ? meterRegistry : null);
+		message = MessageBuilder.withPayload("hello".getBytes()).build();
+	}
+
+	@TearDown
+	public void tearDown() throws InterruptedException {
+		channel.shutdown().awaitTermination(1, TimeUnit.SECONDS);
+		server.shutdown().awaitTermination(1, TimeUnit.SECONDS);
+	}
+
+	@Benchmark
+	public Message<byte[]> process() {
+		ProcessorProtos.Message response = processorStub.process(messageConverter.toProtobuf(message));
+		return messageConverter.fromProtobuf(response);
+	}
+}
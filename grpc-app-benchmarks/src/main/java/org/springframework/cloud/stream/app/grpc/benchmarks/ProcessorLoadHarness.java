@@ -0,0 +1,257 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.benchmarks;
+
+import io.grpc.Channel;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cloud.stream.app.grpc.processor.GrpcProcessorConfiguration;
+import org.springframework.cloud.stream.app.grpc.test.support.LatencyProcessorServer;
+import org.springframework.cloud.stream.messaging.Processor;
+import org.springframework.cloud.stream.test.binder.MessageCollector;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives {@link GrpcProcessorConfiguration} in each stub mode against a {@link LatencyProcessorServer} on the
+ * in-process transport and reports throughput and latency percentiles. No broker is required; the test binder
+ * connects the processor channels.
+ * <p>
+ * Options, as {@code --name=value}: {@code messages} (default 100000), {@code warmup} (default 10000),
+ * {@code payload-size} in bytes (default 200), {@code latency} of the server in microseconds (default 0) and
+ * {@code stubs} (default blocking,async,streaming,batch). Any other option, e.g. {@code --grpc.async.max-in-flight=512},
+ * is passed to the processor.
+ *
+ * @author David Turanski
+ **/
+public class ProcessorLoadHarness {
+
+	private static final long RECEIVE_TIMEOUT_SECONDS = 10;
+
+	private final int messages;
+
+	private final int warmup;
+
+	private final int payloadSize;
+
+	private final long latencyMicros;
+
+	private final List<String> processorProperties;
+
+	public ProcessorLoadHarness(int messages, int warmup, int payloadSize, long latencyMicros,
+		List<String> processorProperties) {
+		this.messages = messages;
+		this.warmup = warmup;
+		this.payloadSize = payloadSize;
+		this.latencyMicros = latencyMicros;
+		this.processorProperties = processorProperties;
+	}
+
+	public static void main(String... args) throws Exception {
+		Map<String, String> options = new LinkedHashMap<>();
+		options.put("messages", "100000");
+		options.put("warmup", "10000");
+		options.put("payload-size", "200");
+		options.put("latency", "0");
+		options.put("stubs", "blocking,async,streaming,batch");
+
+		List<String> processorProperties = new ArrayList<>();
+		for (String arg : args) {
+			String option = arg.startsWith("--") ? arg.substring(2) : arg;
+			int separator = option.indexOf('=');
+			if (separator > 0 && options.containsKey(option.substring(0, separator))) {
+				options.put(option.substring(0, separator), option.substring(separator + 1));
+			}
+			else {
+				processorProperties.add(option);
+			}
+		}
+
+		ProcessorLoadHarness harness = new ProcessorLoadHarness(Integer.parseInt(options.get("messages")),
+			Integer.parseInt(options.get("warmup")), Integer.parseInt(options.get("payload-size")),
+			Long.parseLong(options.get("latency")), processorProperties);
+
+		System.out.println(String.format("messages=%s payload-size=%s latency=%sus %s", options.get("messages"),
+			options.get("payload-size"), options.get("latency"), processorProperties));
+		System.out.println(String.format("%-10s %12s %10s %10s %10s %10s", "stub", "msgs/sec", "p50(us)", "p99(us)",
+			"p999(us)", "max(us)"));
+		for (String stub : options.get("stubs").split(",")) {
+			Result result = harness.run(stub.trim());
+			System.out.println(String.format("%-10s %12.0f %10d %10d %10d %10d", stub.trim(), result.getThroughput(),
+				result.getLatencyMicros(50.0), result.getLatencyMicros(99.0), result.getLatencyMicros(99.9),
+				result.getLatencyMicros(100.0)));
+		}
+	}
+
+	public Result run(String stub) throws Exception {
+		LatencyProcessorServer server = new LatencyProcessorServer(latencyMicros);
+		server.start();
+		ManagedChannel channel = InProcessChannelBuilder.forName(server.getName()).directExecutor().build();
+
+		List<String> properties = new ArrayList<>(processorProperties);
+		properties.add("grpc.stub=" + stub);
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(HarnessConfiguration.class)
+			.web(WebApplicationType.NONE)
+			.properties(properties.toArray(new String[0]))
+			.initializers(applicationContext -> ((GenericApplicationContext) applicationContext)
+				.registerBean("grpcChannel", Channel.class, () -> channel))
+			.run();
+		try {
+			Processor processor = context.getBean(Processor.class);
+			BlockingQueue<Message<?>> output = context.getBean(MessageCollector.class).forChannel(processor.output());
+
+			drive(processor, output, warmup);
+			return drive(processor, output, messages);
+		}
+		finally {
+			context.close();
+			channel.shutdown().awaitTermination(1, TimeUnit.SECONDS);
+			server.stop();
+		}
+	}
+
+	private Result drive(Processor processor, BlockingQueue<Message<?>> output, int count) throws Exception {
+		long[] sentAt = new long[count];
+		Histogram histogram = new Histogram(TimeUnit.MINUTES.toNanos(1), 3);
+		Receiver receiver = new Receiver(output, sentAt, histogram);
+		Thread receiverThread = new Thread(receiver, "load-harness-receiver");
+		receiverThread.start();
+
+		long start = System.nanoTime();
+		for (int i = 0; i < count; i++) {
+			sentAt[i] = System.nanoTime();
+			processor.input().send(MessageBuilder.withPayload(payload(i)).build());
+		}
+		receiverThread.join();
+		long elapsed = receiver.getLastReceivedAt() - start;
+
+		if (receiver.getReceived() < count) {
+			throw new IllegalStateException(String.format("Received %d of %d messages within %d seconds",
+				receiver.getReceived(), count, RECEIVE_TIMEOUT_SECONDS));
+		}
+		return new Result(count * (double) TimeUnit.SECONDS.toNanos(1) / elapsed, histogram);
+	}
+
+	/**
+	 * The payload starts with the sequence number, which the server leaves unchanged, to correlate responses.
+	 */
+	private byte[] payload(int sequence) {
+		byte[] prefix = (sequence + ":").getBytes();
+		byte[] payload = new byte[Math.max(payloadSize, prefix.length)];
+		Arrays.fill(payload, (byte) 'x');
+		System.arraycopy(prefix, 0, payload, 0, prefix.length);
+		return payload;
+	}
+
+	public static class Result {
+
+		private final double throughput;
+
+		private final Histogram latency;
+
+		Result(double throughput, Histogram latency) {
+			this.throughput = throughput;
+			this.latency = latency;
+		}
+
+		/**
+		 * @return messages per second.
+		 */
+		public double getThroughput() {
+			return throughput;
+		}
+
+		public long getLatencyMicros(double percentile) {
+			return TimeUnit.NANOSECONDS.toMicros(latency.getValueAtPercentile(percentile));
+		}
+
+		public Histogram getLatency() {
+			return latency;
+		}
+	}
+
+	private static class Receiver implements Runnable {
+
+		private final BlockingQueue<Message<?>> output;
+
+		private final long[] sentAt;
+
+		private final Histogram histogram;
+
+		private volatile int received;
+
+		private volatile long lastReceivedAt;
+
+		Receiver(BlockingQueue<Message<?>> output, long[] sentAt, Histogram histogram) {
+			this.output = output;
+			this.sentAt = sentAt;
+			this.histogram = histogram;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (received < sentAt.length) {
+					Message<?> message = output.poll(RECEIVE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+					if (message == null) {
+						return;
+					}
+					long now = System.nanoTime();
+					String payload = message.getPayload() instanceof byte[] ?
+						new String((byte[]) message.getPayload()) : message.getPayload().toString();
+					int sequence = Integer.parseInt(payload.substring(0, payload.indexOf(':')));
+					histogram.recordValue(Math.min(now - sentAt[sequence], histogram.getHighestTrackableValue()));
+					lastReceivedAt = now;
+					received++;
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		int getReceived() {
+			return received;
+		}
+
+		long getLastReceivedAt() {
+			return lastReceivedAt;
+		}
+	}
+
+	@Configuration
+	@EnableAutoConfiguration
+	@Import(GrpcProcessorConfiguration.class)
+	static class HarnessConfiguration {
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.support;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Chunk;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.HeaderValue;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Message;
+import org.springframework.util.Assert;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Reassembles messages from the chunks created by {@link MessageUtils#toChunks(Message, int)}, as they arrive. If the
+ * first chunk gives the payload size, each chunk is copied into a payload array of that size and can then be
+ * discarded, so only the payload and one chunk are held at a time. The whole payload is held in memory, so payloads
+ * larger than a maximum size are rejected before anything is allocated for them. Not thread safe; use one per stream.
+ *
+ * @author David Turanski
+ **/
+public class ChunkAssembler {
+
+	/**
+	 * The largest array most JVMs can allocate.
+	 */
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+	private final int maxSize;
+
+	private Map<String, HeaderValue> headers;
+
+	private byte[] payload;
+
+	private int position;
+
+	private ByteString.Output output;
+
+	public ChunkAssembler() {
+		this(MAX_ARRAY_SIZE);
+	}
+
+	/**
+	 * @param maxSize the maximum payload size in bytes.
+	 */
+	public ChunkAssembler(int maxSize) {
+		Assert.isTrue(maxSize > 0, "'maxSize' must be > 0");
+		this.maxSize = Math.min(maxSize, MAX_ARRAY_SIZE);
+	}
+
+	/**
+	 * Add the next chunk.
+	 * @param chunk the chunk.
+	 * @return the message if this is its last chunk, null otherwise.
+	 */
+	public Message add(Chunk chunk) {
+		if (headers == null) {
+			start(chunk);
+		}
+
+		ByteString data = chunk.getData();
+		if (payload != null) {
+			if (position + data.size() > payload.length) {
+				throw new IllegalStateException(String.format("Chunks exceed the payload size of %d bytes",
+					payload.length));
+			}
+			data.copyTo(payload, position);
+		}
+		else {
+			if (position + (long) data.size() > maxSize) {
+				throw new IllegalStateException(String.format("Chunks exceed the maximum payload size of %d bytes",
+					maxSize));
+			}
+			try {
+				data.writeTo(output);
+			}
+			catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		position += data.size();
+
+		if (!chunk.getLast()) {
+			return null;
+		}
+
+		if (payload != null && position != payload.length) {
+			throw new IllegalStateException(String.format("Received %d of %d payload bytes", position,
+				payload.length));
+		}
+		Message message = Message.newBuilder().putAllHeaders(headers)
+			.setPayload(payload != null ? UnsafeByteOperations.unsafeWrap(payload) : output.toByteString())
+			.build();
+		headers = null;
+		payload = null;
+		output = null;
+		position = 0;
+		return message;
+	}
+
+	private void start(Chunk chunk) {
+		headers = chunk.getHeadersMap();
+		if (chunk.getSize() > maxSize) {
+			throw new IllegalStateException(String.format(
+				"Payload size of %d bytes exceeds the maximum of %d bytes", chunk.getSize(), maxSize));
+		}
+		if (chunk.getSize() > 0) {
+			payload = new byte[(int) chunk.getSize()];
+		}
+		else {
+			output = ByteString.newOutput();
+		}
+	}
+}
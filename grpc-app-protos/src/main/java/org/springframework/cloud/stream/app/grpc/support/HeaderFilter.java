@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.support;
+
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.PatternMatchUtils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Selects the headers exchanged with the sidecar by name. A header is accepted if it matches one of the include
+ * patterns, or there are none, and does not match any of the exclude patterns. Patterns support simple '*'
+ * wildcards, e.g. 'kafka_*'.
+ *
+ * @author David Turanski
+ **/
+public class HeaderFilter {
+
+	/**
+	 * A filter accepting all headers.
+	 */
+	public static final HeaderFilter ALL = new HeaderFilter(null, null);
+
+	private static final int MAX_CACHED_DECISIONS = 1024;
+
+	private final String[] include;
+
+	private final String[] exclude;
+
+	private final ConcurrentMap<String, Boolean> decisions = new ConcurrentHashMap<>();
+
+	/**
+	 * @param include the header name patterns to include, null or empty to include all headers.
+	 * @param exclude the header name patterns to exclude, may be null.
+	 */
+	public HeaderFilter(String[] include, String[] exclude) {
+		this.include = ObjectUtils.isEmpty(include) ? null : include;
+		this.exclude = ObjectUtils.isEmpty(exclude) ? null : exclude;
+	}
+
+	public boolean accept(String name) {
+		if (include == null && exclude == null) {
+			return true;
+		}
+
+		Boolean accepted = decisions.get(name);
+		if (accepted == null) {
+			accepted = (include == null || PatternMatchUtils.simpleMatch(include, name)) &&
+				(exclude == null || !PatternMatchUtils.simpleMatch(exclude, name));
+			if (decisions.size() < MAX_CACHED_DECISIONS) {
+				decisions.put(name, accepted);
+			}
+		}
+		return accepted;
+	}
+}
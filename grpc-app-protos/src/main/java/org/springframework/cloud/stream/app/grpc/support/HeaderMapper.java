@@ -0,0 +1,176 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.support;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.MimeType;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * Maps Spring message headers to protobuf header values. How to convert a header is decided once per header name and
+ * value type and cached, since the same headers are typically seen on every message. Header values for repeated
+ * constant values, such as the content type, are cached and reused.
+ *
+ * @param <V> the protobuf header value type.
+ * @author David Turanski
+ **/
+final class HeaderMapper<V> {
+
+	private static Log logger = LogFactory.getLog(HeaderMapper.class);
+
+	private static final int MAX_PLANS = 1024;
+
+	private static final int MAX_CACHED_VALUES = 16;
+
+	private enum Conversion {ID, TIMESTAMP, STRING, MIME_TYPE, ITERABLE, ARRAY, UNSUPPORTED}
+
+	private final ConcurrentMap<String, Plan<V>> plans = new ConcurrentHashMap<>();
+
+	private final Function<String, V> singleValue;
+
+	private final Function<List<String>, V> multipleValues;
+
+	private final V emptyValue;
+
+	/**
+	 * @param singleValue creates a header value containing one value.
+	 * @param multipleValues creates a header value containing several values.
+	 * @param emptyValue the header value for headers that cannot be mapped.
+	 */
+	HeaderMapper(Function<String, V> singleValue, Function<List<String>, V> multipleValues, V emptyValue) {
+		this.singleValue = singleValue;
+		this.multipleValues = multipleValues;
+		this.emptyValue = emptyValue;
+	}
+
+	Map<String, V> map(MessageHeaders messageHeaders, HeaderFilter headerFilter) {
+		Map<String, V> headers = new HashMap<>((int) (messageHeaders.size() / 0.75f) + 1);
+		for (Map.Entry<String, Object> header : messageHeaders.entrySet()) {
+			if (headerFilter.accept(header.getKey())) {
+				headers.put(header.getKey(), plan(header.getKey(), header.getValue()).convert(header.getValue()));
+			}
+		}
+		return headers;
+	}
+
+	private Plan<V> plan(String name, Object value) {
+		Plan<V> plan = plans.get(name);
+		if (plan != null && plan.type == value.getClass()) {
+			return plan;
+		}
+
+		plan = new Plan<>(this, name, value.getClass(), conversion(name, value));
+		if (plans.size() < MAX_PLANS) {
+			plans.put(name, plan);
+		}
+		return plan;
+	}
+
+	private static Conversion conversion(String name, Object value) {
+		if (name.equals(MessageHeaders.ID)) {
+			return Conversion.ID;
+		}
+		else if (name.equals(MessageHeaders.TIMESTAMP)) {
+			return Conversion.TIMESTAMP;
+		}
+		else if (value instanceof String) {
+			return Conversion.STRING;
+		}
+		else if (value instanceof MimeType) {
+			return Conversion.MIME_TYPE;
+		}
+		else if (value instanceof Iterable<?>) {
+			return Conversion.ITERABLE;
+		}
+		else if (value instanceof Object[]) {
+			return Conversion.ARRAY;
+		}
+		logger.warn(String.format("Header %s is not mapped  to gRPC message. Unsupported type %s", name,
+			value.getClass().getName()));
+		return Conversion.UNSUPPORTED;
+	}
+
+	private static final class Plan<V> {
+
+		private final HeaderMapper<V> mapper;
+
+		private final String name;
+
+		private final Class<?> type;
+
+		private final Conversion conversion;
+
+		private final ConcurrentMap<Object, V> constantValues;
+
+		Plan(HeaderMapper<V> mapper, String name, Class<?> type, Conversion conversion) {
+			this.mapper = mapper;
+			this.name = name;
+			this.type = type;
+			this.conversion = conversion;
+			this.constantValues = conversion == Conversion.STRING || conversion == Conversion.MIME_TYPE ?
+				new ConcurrentHashMap<>() : null;
+		}
+
+		V convert(Object value) {
+			switch (conversion) {
+			case ID:
+				return mapper.singleValue.apply(value.toString());
+			case TIMESTAMP:
+				return mapper.singleValue.apply(String.valueOf((long) value));
+			case STRING:
+			case MIME_TYPE:
+				V headerValue = constantValues.get(value);
+				if (headerValue == null) {
+					headerValue = mapper.singleValue.apply(value.toString());
+					if (constantValues.size() < MAX_CACHED_VALUES) {
+						constantValues.putIfAbsent(value, headerValue);
+					}
+				}
+				return headerValue;
+			case ITERABLE:
+				List<String> values = new ArrayList<>();
+				for (Object element : (Iterable<?>) value) {
+					if (!(element instanceof String)) {
+						logger.warn(String.format("Header %s is not mapped to gRPC message. Unsupported element type",
+							name));
+						return mapper.emptyValue;
+					}
+					values.add((String) element);
+				}
+				return mapper.multipleValues.apply(values);
+			case ARRAY:
+				Object[] array = (Object[]) value;
+				List<String> elements = new ArrayList<>(array.length);
+				for (Object element : array) {
+					elements.add(element.toString());
+				}
+				return mapper.multipleValues.apply(elements);
+			default:
+				return mapper.emptyValue;
+			}
+		}
+	}
+}
@@ -16,14 +16,23 @@
 
 package org.springframework.cloud.stream.app.grpc.support;
 
+import com.google.protobuf.ByteOutput;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import function.Function;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Chunk;
 import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.HeaderValue;
 import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Message;
 import org.springframework.integration.support.MutableMessageBuilder;
 import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.Assert;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.UUID;
 
 /**
@@ -31,9 +40,36 @@ import java.util.UUID;
  **/
 public abstract class MessageUtils {
 	public static org.springframework.messaging.Message<byte[]> toMessage(Message message) {
+		return toMessage(message, false);
+	}
+
+	/**
+	 * Convert a protobuf message to a Spring message.
+	 * @param message the protobuf message.
+	 * @param zeroCopy true to use the protobuf payload's backing array as the payload, if possible, instead of a copy.
+	 * The protobuf message must not be used afterwards.
+	 * @return the Spring message.
+	 */
+	public static org.springframework.messaging.Message<byte[]> toMessage(Message message, boolean zeroCopy) {
+		return toMessage(message, zeroCopy, HeaderFilter.ALL);
+	}
+
+	/**
+	 * Convert a protobuf message to a Spring message.
+	 * @param message the protobuf message.
+	 * @param zeroCopy true to use the protobuf payload's backing array as the payload, if possible, instead of a copy.
+	 * The protobuf message must not be used afterwards.
+	 * @param headerFilter selects the headers to map.
+	 * @return the Spring message.
+	 */
+	public static org.springframework.messaging.Message<byte[]> toMessage(Message message, boolean zeroCopy,
+		HeaderFilter headerFilter) {
 
 		Map<String, Object> headers = new LinkedHashMap<>();
 		for (Map.Entry<String, HeaderValue> header : message.getHeadersMap().entrySet()) {
+			if (!headerFilter.accept(header.getKey())) {
+				continue;
+			}
 			if (header.getKey().equals(MessageHeaders.ID)) {
 				headers.put(header.getKey(), UUID.fromString(header.getValue().getValues(0)));
 			}
@@ -52,13 +88,40 @@ public abstract class MessageUtils {
 			}
 		}
 
-		return MutableMessageBuilder.withPayload(message.getPayload().toByteArray()).copyHeaders(headers).build();
+		return MutableMessageBuilder.withPayload(toByteArray(message.getPayload(), zeroCopy)).copyHeaders(headers).build();
 	}
 
 	public static org.springframework.messaging.Message<byte[]> toMessage(Function.Message message) {
+		return toMessage(message, false);
+	}
+
+	/**
+	 * Convert a riff protobuf message to a Spring message.
+	 * @param message the protobuf message.
+	 * @param zeroCopy true to use the protobuf payload's backing array as the payload, if possible, instead of a copy.
+	 * The protobuf message must not be used afterwards.
+	 * @return the Spring message.
+	 */
+	public static org.springframework.messaging.Message<byte[]> toMessage(Function.Message message, boolean zeroCopy) {
+		return toMessage(message, zeroCopy, HeaderFilter.ALL);
+	}
+
+	/**
+	 * Convert a riff protobuf message to a Spring message.
+	 * @param message the protobuf message.
+	 * @param zeroCopy true to use the protobuf payload's backing array as the payload, if possible, instead of a copy.
+	 * The protobuf message must not be used afterwards.
+	 * @param headerFilter selects the headers to map.
+	 * @return the Spring message.
+	 */
+	public static org.springframework.messaging.Message<byte[]> toMessage(Function.Message message, boolean zeroCopy,
+		HeaderFilter headerFilter) {
 
 		Map<String, Object> headers = new LinkedHashMap<>();
 		for (Map.Entry<String, Function.Message.HeaderValue> header : message.getHeadersMap().entrySet()) {
+			if (!headerFilter.accept(header.getKey())) {
+				continue;
+			}
 			if (header.getKey().equals(MessageHeaders.ID)) {
 				headers.put(header.getKey(), UUID.fromString(header.getValue().getValues(0)));
 			}
@@ -77,7 +140,112 @@ public abstract class MessageUtils {
 			}
 		}
 
-		return MutableMessageBuilder.withPayload(message.getPayload().toByteArray()).copyHeaders(headers).build();
+		return MutableMessageBuilder.withPayload(toByteArray(message.getPayload(), zeroCopy)).copyHeaders(headers).build();
+	}
+
+	/**
+	 * Split a protobuf message into chunks of at most 'chunkSize' payload bytes. Chunks are created as they are
+	 * iterated and share the message's payload rather than copying it.
+	 * @param message the protobuf message.
+	 * @param chunkSize the maximum payload size of each chunk.
+	 * @return the chunks.
+	 * @see ChunkAssembler
+	 */
+	public static Iterable<Chunk> toChunks(Message message, int chunkSize) {
+		Assert.isTrue(chunkSize > 0, "'chunkSize' must be > 0");
+		ByteString payload = message.getPayload();
+		return () -> new Iterator<Chunk>() {
+
+			private int position;
+
+			private boolean first = true;
+
+			@Override
+			public boolean hasNext() {
+				return first || position < payload.size();
+			}
+
+			@Override
+			public Chunk next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				int end = (int) Math.min((long) position + chunkSize, payload.size());
+				Chunk.Builder chunk = Chunk.newBuilder().setData(payload.substring(position, end))
+					.setLast(end == payload.size());
+				if (first) {
+					chunk.putAllHeaders(message.getHeadersMap()).setSize(payload.size());
+					first = false;
+				}
+				position = end;
+				return chunk.build();
+			}
+		};
 	}
 
+	private static byte[] toByteArray(ByteString byteString, boolean zeroCopy) {
+		if (zeroCopy) {
+			BackingArrayOutput output = new BackingArrayOutput(byteString.size());
+			try {
+				UnsafeByteOperations.unsafeWriteTo(byteString, output);
+			}
+			catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			if (output.getBackingArray() != null) {
+				return output.getBackingArray();
+			}
+		}
+		return byteString.toByteArray();
+	}
+
+	/**
+	 * Captures the array backing a {@link ByteString} if it is a single array of exactly the string's size.
+	 */
+	private static class BackingArrayOutput extends ByteOutput {
+
+		private final int size;
+
+		private byte[] backingArray;
+
+		private boolean contiguous = true;
+
+		BackingArrayOutput(int size) {
+			this.size = size;
+		}
+
+		byte[] getBackingArray() {
+			return contiguous ? backingArray : null;
+		}
+
+		@Override
+		public void writeLazy(byte[] value, int offset, int length) {
+			if (backingArray == null && offset == 0 && length == size && value.length == size) {
+				backingArray = value;
+			}
+			else {
+				contiguous = false;
+			}
+		}
+
+		@Override
+		public void write(byte value) {
+			contiguous = false;
+		}
+
+		@Override
+		public void write(byte[] value, int offset, int length) {
+			contiguous = false;
+		}
+
+		@Override
+		public void write(ByteBuffer value) {
+			contiguous = false;
+		}
+
+		@Override
+		public void writeLazy(ByteBuffer value) {
+			contiguous = false;
+		}
+	}
 }
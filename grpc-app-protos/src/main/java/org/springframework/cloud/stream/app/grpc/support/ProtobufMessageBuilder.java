@@ -17,26 +17,29 @@
 package org.springframework.cloud.stream.app.grpc.support;
 
 import com.google.protobuf.ByteString;
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
+import com.google.protobuf.UnsafeByteOperations;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Chunk;
 import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.HeaderValue;
 import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Message;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.util.Assert;
-import org.springframework.util.MimeType;
 
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * @author David Turanski
  **/
 public class ProtobufMessageBuilder {
 
-	private static Log logger = LogFactory.getLog(ProtobufMessageBuilder.class);
+	private static final HeaderMapper<HeaderValue> headerMapper = new HeaderMapper<>(
+		value -> HeaderValue.newBuilder().addValues(value).build(),
+		values -> HeaderValue.newBuilder().addAllValues(values).build(),
+		HeaderValue.getDefaultInstance());
 
 	private Map<String, HeaderValue> headers;
 	private byte[] payload;
+	private boolean zeroCopy;
+	private HeaderFilter headerFilter = HeaderFilter.ALL;
 	private Message.Builder builder = Message.newBuilder();
 
 	public ProtobufMessageBuilder() {
@@ -47,54 +50,30 @@ public class ProtobufMessageBuilder {
 		return this;
 	}
 
-	public ProtobufMessageBuilder withHeaders(MessageHeaders messageHeaders) {
+	/**
+	 * Wrap the payload in the built message instead of copying it. The payload must not be modified afterwards.
+	 * @param zeroCopy true to wrap the payload.
+	 * @return this builder.
+	 */
+	public ProtobufMessageBuilder zeroCopy(boolean zeroCopy) {
+		this.zeroCopy = zeroCopy;
+		return this;
+	}
 
-		Map<String, HeaderValue> headers = messageHeaders.entrySet().stream()
-			.collect(Collectors.toMap(Map.Entry::getKey, e -> {
-				HeaderValue.Builder builder = HeaderValue.newBuilder();
-
-				if (e.getKey() == MessageHeaders.ID) {
-					builder.addValues(e.getValue().toString());
-				}
-				else if (e.getKey() == MessageHeaders.TIMESTAMP) {
-					builder.addValues(String.valueOf((long) e.getValue()));
-				}
-
-				else if (e.getValue() instanceof String) {
-					builder.addValues((String) e.getValue());
-
-				}
-
-				else if (e.getValue() instanceof MimeType) {
-					builder.addValues(e.getValue().toString());
-				}
-
-				else if (e.getValue() instanceof Iterable<?>) {
-					try {
-						builder.addAllValues((Iterable<String>) e.getValue());
-
-					}
-					catch (ClassCastException e1) {
-						logger.warn(String
-							.format("Header %s is not mapped to gRPC message. Unsupported element type", e.getKey()));
-					}
-				}
-				else if (e.getValue().getClass().isArray()) {
-					Object[] array = (Object[]) e.getValue();
-					for (Object obj : array) {
-						builder.addValues(obj.toString());
-					}
-				}
-				else {
-					if (e.getValue() != null) {
-						logger.warn(String
-							.format("Header %s is not mapped  to gRPC message. Unsupported type %s", e.getKey(),
-								e.getValue().getClass().getName()));
-					}
-				}
-				return builder.build();
-			}));
-		this.headers = headers;
+	/**
+	 * Set the filter selecting the headers mapped by {@link #withHeaders(MessageHeaders)}. Accepts all headers by
+	 * default.
+	 * @param headerFilter the header filter.
+	 * @return this builder.
+	 */
+	public ProtobufMessageBuilder withHeaderFilter(HeaderFilter headerFilter) {
+		Assert.notNull(headerFilter, "'headerFilter' cannot be null.");
+		this.headerFilter = headerFilter;
+		return this;
+	}
+
+	public ProtobufMessageBuilder withHeaders(MessageHeaders messageHeaders) {
+		this.headers = headerMapper.map(messageHeaders, headerFilter);
 		return this;
 	}
 
@@ -107,12 +86,23 @@ public class ProtobufMessageBuilder {
 		return this.withHeaders(message.getHeaders()).withPayload((byte[]) message.getPayload());
 	}
 
+	/**
+	 * Build the message as chunks, to be sent with 'ProcessChunked'.
+	 * @param chunkSize the maximum payload size of each chunk.
+	 * @return the chunks.
+	 * @see MessageUtils#toChunks(Message, int)
+	 */
+	public Iterable<Chunk> buildChunks(int chunkSize) {
+		return MessageUtils.toChunks(build(), chunkSize);
+	}
+
 	public Message build() {
 		Assert.notNull(this.payload, "payload cannot be null.");
+		ByteString payload = zeroCopy ? UnsafeByteOperations.unsafeWrap(this.payload) : ByteString.copyFrom(this.payload);
 		if (headers == null) {
-			return builder.setPayload(ByteString.copyFrom(payload)).build();
+			return builder.setPayload(payload).build();
 		}
 
-		return builder.putAllHeaders(headers).setPayload(ByteString.copyFrom(payload)).build();
+		return builder.putAllHeaders(headers).setPayload(payload).build();
 	}
 }
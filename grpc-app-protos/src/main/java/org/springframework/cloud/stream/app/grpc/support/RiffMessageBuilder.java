@@ -17,25 +17,27 @@
 package org.springframework.cloud.stream.app.grpc.support;
 
 import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 import function.Function;
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.util.Assert;
-import org.springframework.util.MimeType;
 
 import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
  * @author David Turanski
  **/
 public class RiffMessageBuilder {
 
-	private static Log logger = LogFactory.getLog(RiffMessageBuilder.class);
+	private static final HeaderMapper<Function.Message.HeaderValue> headerMapper = new HeaderMapper<>(
+		value -> Function.Message.HeaderValue.newBuilder().addValues(value).build(),
+		values -> Function.Message.HeaderValue.newBuilder().addAllValues(values).build(),
+		Function.Message.HeaderValue.getDefaultInstance());
 
 	private Map<String, Function.Message.HeaderValue> headers;
 	private byte[] payload;
+	private boolean zeroCopy;
+	private HeaderFilter headerFilter = HeaderFilter.ALL;
 	private Function.Message.Builder builder = Function.Message.newBuilder();
 
 	public RiffMessageBuilder() {
@@ -46,55 +48,30 @@ public class RiffMessageBuilder {
 		return this;
 	}
 
-	public RiffMessageBuilder withHeaders(MessageHeaders messageHeaders) {
-
-		Map<String, Function.Message.HeaderValue> headers = messageHeaders.entrySet()
-			.stream()
-			.collect(Collectors.toMap(Map.Entry::getKey, e -> {
-				Function.Message.HeaderValue.Builder builder = Function.Message.HeaderValue.newBuilder();
-
-				if (e.getKey() == MessageHeaders.ID) {
-					builder.addValues(e.getValue().toString());
-				}
-				else if (e.getKey() == MessageHeaders.TIMESTAMP) {
-					builder.addValues(String.valueOf((long) e.getValue()));
-				}
-
-				else if (e.getValue() instanceof String) {
-					builder.addValues((String) e.getValue());
-
-				}
-
-				else if (e.getValue() instanceof MimeType) {
-					builder.addValues(e.getValue().toString());
-				}
+	/**
+	 * Wrap the payload in the built message instead of copying it. The payload must not be modified afterwards.
+	 * @param zeroCopy true to wrap the payload.
+	 * @return this builder.
+	 */
+	public RiffMessageBuilder zeroCopy(boolean zeroCopy) {
+		this.zeroCopy = zeroCopy;
+		return this;
+	}
 
-				else if (e.getValue() instanceof Iterable<?>) {
-					try {
-						builder.addAllValues((Iterable<String>) e.getValue());
+	/**
+	 * Set the filter selecting the headers mapped by {@link #withHeaders(MessageHeaders)}. Accepts all headers by
+	 * default.
+	 * @param headerFilter the header filter.
+	 * @return this builder.
+	 */
+	public RiffMessageBuilder withHeaderFilter(HeaderFilter headerFilter) {
+		Assert.notNull(headerFilter, "'headerFilter' cannot be null.");
+		this.headerFilter = headerFilter;
+		return this;
+	}
 
-					}
-					catch (ClassCastException e1) {
-						logger.warn(String.format("Header %s is not mapped to gRPC message. Unsupported element type",
-							e.getKey()));
-					}
-				}
-				else if (e.getValue().getClass().isArray()) {
-					Object[] array = (Object[]) e.getValue();
-					for (Object obj : array) {
-						builder.addValues(obj.toString());
-					}
-				}
-				else {
-					if (e.getValue() != null) {
-						logger.warn(
-							String.format("Header %s is not mapped  to gRPC message. Unsupported type %s", e.getKey(),
-								e.getValue().getClass().getName()));
-					}
-				}
-				return builder.build();
-			}));
-		this.headers = headers;
+	public RiffMessageBuilder withHeaders(MessageHeaders messageHeaders) {
+		this.headers = headerMapper.map(messageHeaders, headerFilter);
 		return this;
 	}
 
@@ -109,10 +86,11 @@ public class RiffMessageBuilder {
 
 	public Function.Message build() {
 		Assert.notNull(this.payload, "payload cannot be null.");
+		ByteString payload = zeroCopy ? UnsafeByteOperations.unsafeWrap(this.payload) : ByteString.copyFrom(this.payload);
 		if (headers == null) {
-			return builder.setPayload(ByteString.copyFrom(payload)).build();
+			return builder.setPayload(payload).build();
 		}
 
-		return builder.putAllHeaders(headers).setPayload(ByteString.copyFrom(payload)).build();
+		return builder.putAllHeaders(headers).setPayload(payload).build();
 	}
 }
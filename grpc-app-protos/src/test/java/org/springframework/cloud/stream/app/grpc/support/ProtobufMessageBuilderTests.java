@@ -17,11 +17,21 @@
 package org.springframework.cloud.stream.app.grpc.support;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import com.google.protobuf.ByteString;
+import function.Function;
 import org.junit.Test;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Chunk;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.HeaderValue;
 import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Message;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * @author David Turanski
@@ -35,6 +45,147 @@ public class ProtobufMessageBuilderTests {
 		checkPayloadsAndHeadersEqual(source, target);
 	}
 
+	@Test
+	public void testHeaderTypes() {
+		org.springframework.messaging.Message<byte[]> source = MessageBuilder.withPayload("hello".getBytes())
+			.setHeader(MessageHeaders.CONTENT_TYPE, MimeTypeUtils.APPLICATION_JSON)
+			.setHeader("string", "value")
+			.setHeader("list", Arrays.asList("a", "b"))
+			.setHeader("array", new Object[] { 1, 2 })
+			.setHeader("unsupported", 3.14)
+			.build();
+		Message target = new ProtobufMessageBuilder().fromMessage(source).build();
+
+		assertThat(target.getHeadersOrThrow(MessageHeaders.CONTENT_TYPE).getValuesList())
+			.containsExactly("application/json");
+		assertThat(target.getHeadersOrThrow("string").getValuesList()).containsExactly("value");
+		assertThat(target.getHeadersOrThrow("list").getValuesList()).containsExactly("a", "b");
+		assertThat(target.getHeadersOrThrow("array").getValuesList()).containsExactly("1", "2");
+		assertThat(target.getHeadersOrThrow("unsupported").getValuesList()).isEmpty();
+		assertThat(target.getHeadersOrThrow(MessageHeaders.TIMESTAMP).getValues(0))
+			.isEqualTo(String.valueOf(source.getHeaders().getTimestamp()));
+	}
+
+	@Test
+	public void testHeaderFilter() {
+		org.springframework.messaging.Message<byte[]> source = MessageBuilder.withPayload("hello".getBytes())
+			.setHeader("app_name", "test")
+			.setHeader("app_internal", "secret")
+			.setHeader("kafka_offset", "1")
+			.build();
+		HeaderFilter headerFilter = new HeaderFilter(new String[] { "app_*", MessageHeaders.ID },
+			new String[] { "*_internal" });
+		Message target = new ProtobufMessageBuilder().withHeaderFilter(headerFilter).fromMessage(source).build();
+
+		assertThat(target.getHeadersMap()).containsOnlyKeys("app_name", MessageHeaders.ID);
+
+		Message response = Message.newBuilder(target)
+			.putHeaders("app_internal", HeaderValue.newBuilder().addValues("secret").build())
+			.build();
+		org.springframework.messaging.Message<byte[]> actual = MessageUtils.toMessage(response, false, headerFilter);
+		assertThat(actual.getHeaders().get("app_name")).isEqualTo("test");
+		assertThat(actual.getHeaders().getId()).isEqualTo(source.getHeaders().getId());
+		assertThat(actual.getHeaders()).doesNotContainKey("app_internal");
+	}
+
+	@Test
+	public void testConstantHeaderValuesAreReused() {
+		Message first = new ProtobufMessageBuilder().fromMessage(MessageBuilder.withPayload("hello".getBytes())
+			.setHeader(MessageHeaders.CONTENT_TYPE, "text/plain").build()).build();
+		Message second = new ProtobufMessageBuilder().fromMessage(MessageBuilder.withPayload("world".getBytes())
+			.setHeader(MessageHeaders.CONTENT_TYPE, "text/plain").build()).build();
+
+		assertThat(second.getHeadersOrThrow(MessageHeaders.CONTENT_TYPE))
+			.isSameAs(first.getHeadersOrThrow(MessageHeaders.CONTENT_TYPE));
+		assertThat(second.getHeadersOrThrow(MessageHeaders.ID).getValues(0))
+			.isNotEqualTo(first.getHeadersOrThrow(MessageHeaders.ID).getValues(0));
+	}
+
+	@Test
+	public void testZeroCopyPayload() {
+		byte[] payload = "hello".getBytes();
+		Message target = new ProtobufMessageBuilder().zeroCopy(true).withPayload(payload).build();
+		assertThat(MessageUtils.toMessage(target, true).getPayload()).isSameAs(payload);
+		assertThat(MessageUtils.toMessage(target).getPayload()).isNotSameAs(payload).isEqualTo(payload);
+	}
+
+	@Test
+	public void testZeroCopyRiffPayload() {
+		byte[] payload = "hello".getBytes();
+		Function.Message target = new RiffMessageBuilder().zeroCopy(true).withPayload(payload).build();
+		assertThat(MessageUtils.toMessage(target, true).getPayload()).isSameAs(payload);
+	}
+
+	@Test
+	public void testZeroCopyFallsBackToCopy() {
+		// Large enough that concat builds a rope rather than copying into a single array.
+		byte[] first = new byte[1024];
+		byte[] second = new byte[1024];
+		Arrays.fill(second, (byte) 1);
+		Message target = Message.newBuilder()
+			.setPayload(ByteString.copyFrom(first).concat(ByteString.copyFrom(second)))
+			.build();
+		byte[] payload = MessageUtils.toMessage(target, true).getPayload();
+		assertThat(payload).hasSize(2048);
+		assertThat(Arrays.copyOfRange(payload, 1024, 2048)).isEqualTo(second);
+	}
+
+	@Test
+	public void testChunks() {
+		byte[] bytes = new byte[1000];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) i;
+		}
+		org.springframework.messaging.Message<byte[]> source = MessageBuilder.withPayload(bytes)
+			.setHeader("string", "value").build();
+
+		List<Chunk> chunks = new ArrayList<>();
+		new ProtobufMessageBuilder().fromMessage(source).buildChunks(300).forEach(chunks::add);
+
+		assertThat(chunks).hasSize(4);
+		assertThat(chunks.get(0).getSize()).isEqualTo(1000);
+		assertThat(chunks.get(0).getHeadersOrThrow("string").getValues(0)).isEqualTo("value");
+		assertThat(chunks.get(1).getHeadersMap()).isEmpty();
+		assertThat(chunks.get(3).getData().size()).isEqualTo(100);
+		assertThat(chunks.stream().filter(Chunk::getLast)).containsExactly(chunks.get(3));
+
+		ChunkAssembler assembler = new ChunkAssembler();
+		Message target = null;
+		for (Chunk chunk : chunks) {
+			assertThat(target).isNull();
+			target = assembler.add(chunk);
+		}
+		checkPayloadsAndHeadersEqual(source, target);
+	}
+
+	@Test
+	public void testChunksExceedingMaxSize() {
+		org.springframework.messaging.Message<byte[]> source = MessageBuilder.withPayload(new byte[1000]).build();
+		List<Chunk> chunks = new ArrayList<>();
+		new ProtobufMessageBuilder().fromMessage(source).buildChunks(300).forEach(chunks::add);
+
+		assertThatThrownBy(() -> new ChunkAssembler(999).add(chunks.get(0)))
+			.isInstanceOf(IllegalStateException.class).hasMessageContaining("exceeds the maximum");
+
+		// Without a size in the first chunk, the payload is rejected once it grows too large.
+		ChunkAssembler assembler = new ChunkAssembler(500);
+		assembler.add(chunks.get(0).toBuilder().setSize(0).build());
+		assertThatThrownBy(() -> assembler.add(chunks.get(1))).isInstanceOf(IllegalStateException.class)
+			.hasMessageContaining("exceed the maximum");
+	}
+
+	@Test
+	public void testEmptyPayloadChunks() {
+		org.springframework.messaging.Message<byte[]> source = MessageBuilder.withPayload(new byte[0]).build();
+
+		List<Chunk> chunks = new ArrayList<>();
+		new ProtobufMessageBuilder().fromMessage(source).buildChunks(300).forEach(chunks::add);
+
+		assertThat(chunks).hasSize(1);
+		assertThat(chunks.get(0).getLast()).isTrue();
+		checkPayloadsAndHeadersEqual(source, new ChunkAssembler().add(chunks.get(0)));
+	}
+
 	private void checkPayloadsAndHeadersEqual(org.springframework.messaging.Message<?> expected, Message target) {
 		org.springframework.messaging.Message<?> actual = MessageUtils.toMessage(target);
 		assertThat(actual.getPayload()).isEqualTo(expected.getPayload());
@@ -0,0 +1,274 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.server;
+
+import com.google.protobuf.Empty;
+import com.google.protobuf.UnsafeByteOperations;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorGrpc;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Chunk;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Message;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.MessageBatch;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Status;
+import org.springframework.cloud.stream.app.grpc.support.ChunkAssembler;
+import org.springframework.cloud.stream.app.grpc.support.MessageUtils;
+
+import java.util.function.Function;
+
+/**
+ * Implements the processor protocol by applying a function to message payloads. Response messages keep the request
+ * headers. Ping reports 'UP', or 'OUT_OF_SERVICE' once the server is draining, which the processor's health indicator
+ * reports as the sidecar status.
+ * <p>
+ * Streams use manual flow control: the next message is only requested when the response can be sent without
+ * buffering, so a client sending faster than the function can process is held back by HTTP/2 flow control. A failing
+ * function fails the call, or the stream, with {@link io.grpc.Status#INTERNAL}.
+ *
+ * @author David Turanski
+ **/
+public class FunctionProcessorService extends ProcessorGrpc.ProcessorImplBase {
+
+	public static final String UP = "UP";
+
+	public static final String OUT_OF_SERVICE = "OUT_OF_SERVICE";
+
+	private static Log logger = LogFactory.getLog(FunctionProcessorService.class);
+
+	private final Function<byte[], byte[]> function;
+
+	private final int maxChunkedSize;
+
+	private volatile boolean draining;
+
+	/**
+	 * @param function the function applied to each payload.
+	 */
+	public FunctionProcessorService(Function<byte[], byte[]> function) {
+		this(function, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param function the function applied to each payload.
+	 * @param maxChunkedSize the maximum payload size in bytes of a request reassembled from chunks.
+	 */
+	public FunctionProcessorService(Function<byte[], byte[]> function, int maxChunkedSize) {
+		this.function = function;
+		this.maxChunkedSize = maxChunkedSize;
+	}
+
+	/**
+	 * Report the service as out of service, so that clients checking its health stop sending new work.
+	 */
+	public void drain() {
+		draining = true;
+	}
+
+	public boolean isDraining() {
+		return draining;
+	}
+
+	@Override
+	public void ping(Empty request, StreamObserver<Status> responseObserver) {
+		responseObserver.onNext(Status.newBuilder().setMessage(draining ? OUT_OF_SERVICE : UP).build());
+		responseObserver.onCompleted();
+	}
+
+	@Override
+	public void process(Message message, StreamObserver<Message> responseObserver) {
+		Message response;
+		try {
+			response = apply(message);
+		}
+		catch (RuntimeException e) {
+			responseObserver.onError(failure(e));
+			return;
+		}
+		responseObserver.onNext(response);
+		responseObserver.onCompleted();
+	}
+
+	@Override
+	public void processBatch(MessageBatch batch, StreamObserver<MessageBatch> responseObserver) {
+		MessageBatch.Builder response = MessageBatch.newBuilder();
+		try {
+			for (Message message : batch.getMessagesList()) {
+				response.addMessages(apply(message));
+			}
+		}
+		catch (RuntimeException e) {
+			responseObserver.onError(failure(e));
+			return;
+		}
+		responseObserver.onNext(response.build());
+		responseObserver.onCompleted();
+	}
+
+	@Override
+	public StreamObserver<Message> stream(StreamObserver<Message> responseObserver) {
+		FlowControl<Message> flowControl = new FlowControl<>(responseObserver);
+		return new StreamObserver<Message>() {
+
+			@Override
+			public void onNext(Message message) {
+				if (flowControl.isFailed()) {
+					return;
+				}
+				Message response;
+				try {
+					response = apply(message);
+				}
+				catch (RuntimeException e) {
+					flowControl.fail(failure(e));
+					return;
+				}
+				flowControl.onNext(response);
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				logger.debug("Stream cancelled by the client", throwable);
+			}
+
+			@Override
+			public void onCompleted() {
+				flowControl.onCompleted();
+			}
+		};
+	}
+
+	@Override
+	public StreamObserver<Chunk> processChunked(StreamObserver<Chunk> responseObserver) {
+		FlowControl<Chunk> flowControl = new FlowControl<>(responseObserver);
+		ChunkAssembler assembler = new ChunkAssembler(maxChunkedSize);
+		return new StreamObserver<Chunk>() {
+
+			private int chunkSize = 1;
+
+			@Override
+			public void onNext(Chunk chunk) {
+				if (flowControl.isFailed()) {
+					return;
+				}
+				chunkSize = Math.max(chunkSize, chunk.getData().size());
+				Iterable<Chunk> response;
+				try {
+					Message message = assembler.add(chunk);
+					if (message == null) {
+						flowControl.request();
+						return;
+					}
+					response = MessageUtils.toChunks(apply(message), chunkSize);
+				}
+				catch (RuntimeException e) {
+					flowControl.fail(failure(e));
+					return;
+				}
+				flowControl.onNext(response);
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				logger.debug("Stream cancelled by the client", throwable);
+			}
+
+			@Override
+			public void onCompleted() {
+				flowControl.onCompleted();
+			}
+		};
+	}
+
+	private Message apply(Message message) {
+		byte[] payload = function.apply(message.getPayload().toByteArray());
+		// Not copied, so the function must not modify the array it returns.
+		return Message.newBuilder().putAllHeaders(message.getHeadersMap())
+			.setPayload(UnsafeByteOperations.unsafeWrap(payload))
+			.build();
+	}
+
+	private static Throwable failure(RuntimeException e) {
+		logger.error("Function failed", e);
+		return io.grpc.Status.INTERNAL.withDescription(e.getMessage()).withCause(e).asRuntimeException();
+	}
+
+	/**
+	 * Requests one message at a time from the client, and the next only when the transport is ready to send
+	 * responses, so that neither requests nor responses are buffered beyond the flow control windows.
+	 */
+	private static class FlowControl<T> {
+
+		private final ServerCallStreamObserver<T> responseObserver;
+
+		private boolean waitingForReady;
+
+		private boolean failed;
+
+		FlowControl(StreamObserver<T> responseObserver) {
+			this.responseObserver = (ServerCallStreamObserver<T>) responseObserver;
+			this.responseObserver.disableAutoInboundFlowControl();
+			this.responseObserver.setOnReadyHandler(this::onReady);
+			this.responseObserver.request(1);
+		}
+
+		synchronized void onNext(T response) {
+			responseObserver.onNext(response);
+			request();
+		}
+
+		synchronized void onNext(Iterable<T> responses) {
+			responses.forEach(responseObserver::onNext);
+			request();
+		}
+
+		/**
+		 * Request the next message if responses can be sent, or once they can.
+		 */
+		synchronized void request() {
+			if (responseObserver.isReady()) {
+				responseObserver.request(1);
+			}
+			else {
+				waitingForReady = true;
+			}
+		}
+
+		synchronized void onCompleted() {
+			if (!failed) {
+				responseObserver.onCompleted();
+			}
+		}
+
+		synchronized void fail(Throwable throwable) {
+			failed = true;
+			responseObserver.onError(throwable);
+		}
+
+		synchronized boolean isFailed() {
+			return failed;
+		}
+
+		private synchronized void onReady() {
+			if (waitingForReady && responseObserver.isReady()) {
+				waitingForReady = false;
+				responseObserver.request(1);
+			}
+		}
+	}
+}
@@ -0,0 +1,431 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.server;
+
+import io.grpc.Server;
+import io.grpc.netty.NettyServerBuilder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A sidecar server for the gRPC processor, applying a function to each message payload with
+ * {@link FunctionProcessorService}. It listens on a TCP port, using the native epoll transport if available, or on a
+ * Unix domain socket for a co-located processor. Calls are handled on a fixed pool of worker threads, so a slow
+ * function does not stall network I/O.
+ * <p>
+ * {@link #shutdown()} drains the server: ping reports 'OUT_OF_SERVICE' for the drain delay, then new calls are
+ * refused, and calls in progress are given the shutdown timeout to complete before they are cancelled.
+ * <p>
+ * For example:
+ * <pre>
+ * SidecarServer server = new SidecarServer.Builder(payload -&gt; transform(payload)).withPort(10382).build();
+ * server.start();
+ * server.awaitTermination();
+ * </pre>
+ *
+ * @author David Turanski
+ **/
+public class SidecarServer {
+
+	private static Log logger = LogFactory.getLog(SidecarServer.class);
+
+	private final Server server;
+
+	private final FunctionProcessorService service;
+
+	private final EventLoopGroup bossEventLoopGroup;
+
+	private final EventLoopGroup workerEventLoopGroup;
+
+	private final ExecutorService executor;
+
+	private final String socketPath;
+
+	private final long drainDelay;
+
+	private final long shutdownTimeout;
+
+	private Thread shutdownHook;
+
+	private SidecarServer(Builder builder) {
+		this.service = new FunctionProcessorService(builder.function, builder.maxChunkedSize);
+		this.socketPath = builder.socketPath;
+		this.drainDelay = builder.drainDelay;
+		this.shutdownTimeout = builder.shutdownTimeout;
+
+		boolean epoll = socketPath != null || (builder.nativeTransport && epollAvailable());
+		DefaultThreadFactory threadFactory = new DefaultThreadFactory("sidecar-netty", true);
+		this.bossEventLoopGroup = epoll ? new EpollEventLoopGroup(1, threadFactory) :
+			new NioEventLoopGroup(1, threadFactory);
+		this.workerEventLoopGroup = epoll ? new EpollEventLoopGroup(builder.eventLoopThreads, threadFactory) :
+			new NioEventLoopGroup(builder.eventLoopThreads, threadFactory);
+
+		NettyServerBuilder serverBuilder;
+		if (socketPath != null) {
+			serverBuilder = NettyServerBuilder.forAddress(new DomainSocketAddress(socketPath))
+				.channelType(EpollServerDomainSocketChannel.class);
+		}
+		else {
+			serverBuilder = NettyServerBuilder.forAddress(builder.host != null ?
+				new InetSocketAddress(builder.host, builder.port) : new InetSocketAddress(builder.port))
+				.channelType(epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class);
+		}
+		serverBuilder.bossEventLoopGroup(bossEventLoopGroup).workerEventLoopGroup(workerEventLoopGroup);
+
+		if (builder.workerThreads > 0) {
+			this.executor = new ThreadPoolExecutor(builder.workerThreads, builder.workerThreads, 0,
+				TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(builder.workerQueueCapacity),
+				new DefaultThreadFactory("sidecar-worker", true), new ThreadPoolExecutor.CallerRunsPolicy());
+			serverBuilder.executor(executor);
+		}
+		else {
+			this.executor = null;
+			serverBuilder.directExecutor();
+		}
+
+		if (builder.flowControlWindow > 0) {
+			serverBuilder.flowControlWindow(builder.flowControlWindow);
+		}
+		if (builder.maxConcurrentCallsPerConnection > 0) {
+			serverBuilder.maxConcurrentCallsPerConnection(builder.maxConcurrentCallsPerConnection);
+		}
+		if (builder.maxMessageSize > 0) {
+			serverBuilder.maxMessageSize(builder.maxMessageSize);
+		}
+		if (builder.keepAliveTime > 0) {
+			serverBuilder.keepAliveTime(builder.keepAliveTime, TimeUnit.SECONDS)
+				.keepAliveTimeout(builder.keepAliveTimeout, TimeUnit.SECONDS);
+		}
+		if (builder.permitKeepAliveTime > 0) {
+			serverBuilder.permitKeepAliveTime(builder.permitKeepAliveTime, TimeUnit.SECONDS)
+				.permitKeepAliveWithoutCalls(true);
+		}
+
+		this.server = serverBuilder.addService(service).build();
+	}
+
+	/**
+	 * Start serving requests, shutting down when the JVM does.
+	 */
+	public synchronized void start() throws IOException {
+		server.start();
+		logger.info(String.format("Sidecar server listening on %s", getAddress()));
+
+		shutdownHook = new Thread(() -> {
+			logger.info("*** shutting down sidecar server since JVM is shutting down");
+			SidecarServer.this.shutdown();
+			logger.info("*** sidecar server shut down");
+		});
+		Runtime.getRuntime().addShutdownHook(shutdownHook);
+	}
+
+	/**
+	 * Drain and stop the server, then release its threads. Blocks for the drain delay, then until calls in progress
+	 * complete or are cancelled.
+	 */
+	public void shutdown() {
+		removeShutdownHook();
+		if (server.isTerminated()) {
+			return;
+		}
+		service.drain();
+		try {
+			if (drainDelay > 0) {
+				Thread.sleep(drainDelay);
+			}
+			server.shutdown();
+			if (!server.awaitTermination(shutdownTimeout, TimeUnit.MILLISECONDS)) {
+				logger.warn(String.format("Calls still in progress after %dms. Cancelling them.", shutdownTimeout));
+				server.shutdownNow();
+				server.awaitTermination(shutdownTimeout, TimeUnit.MILLISECONDS);
+			}
+		}
+		catch (InterruptedException e) {
+			server.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			if (executor != null) {
+				executor.shutdown();
+			}
+			bossEventLoopGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+			workerEventLoopGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+			if (socketPath != null) {
+				new File(socketPath).delete();
+			}
+		}
+	}
+
+	/**
+	 * Wait for the server to be shut down.
+	 */
+	public void awaitTermination() throws InterruptedException {
+		server.awaitTermination();
+	}
+
+	/**
+	 * @return the port, e.g. when configured as 0 to use any free port, or -1 for a Unix domain socket.
+	 */
+	public int getPort() {
+		return socketPath != null ? -1 : server.getPort();
+	}
+
+	/**
+	 * @return the address to configure as 'grpc.address' or in 'grpc.pool.addresses' on the processor.
+	 */
+	public String getAddress() {
+		return socketPath != null ? "unix://" + socketPath : "localhost:" + server.getPort();
+	}
+
+	public boolean isDraining() {
+		return service.isDraining();
+	}
+
+	/**
+	 * Remove the shutdown hook, so a server shut down explicitly is not kept reachable until the JVM exits.
+	 */
+	private synchronized void removeShutdownHook() {
+		if (shutdownHook == null || Thread.currentThread() == shutdownHook) {
+			return;
+		}
+		try {
+			Runtime.getRuntime().removeShutdownHook(shutdownHook);
+		}
+		catch (IllegalStateException e) {
+			// The JVM is shutting down, so the hook is running or has run.
+		}
+		shutdownHook = null;
+	}
+
+	private static boolean epollAvailable() {
+		try {
+			if (Epoll.isAvailable()) {
+				return true;
+			}
+			logger.warn("The native epoll transport is not available. Using NIO.", Epoll.unavailabilityCause());
+		}
+		catch (NoClassDefFoundError e) {
+			logger.warn("The native epoll transport is not on the classpath. Using NIO.");
+		}
+		return false;
+	}
+
+	public static class Builder {
+
+		private final Function<byte[], byte[]> function;
+
+		private String host;
+
+		private int port = 10382;
+
+		private String socketPath;
+
+		private boolean nativeTransport = true;
+
+		private int eventLoopThreads;
+
+		private int workerThreads = Runtime.getRuntime().availableProcessors();
+
+		private int workerQueueCapacity = 1000;
+
+		private int flowControlWindow;
+
+		private int maxConcurrentCallsPerConnection;
+
+		private int maxMessageSize;
+
+		private long keepAliveTime;
+
+		private long keepAliveTimeout = 20;
+
+		private long permitKeepAliveTime;
+
+		private long drainDelay;
+
+		private long shutdownTimeout = 30000;
+
+		private int maxChunkedSize = 64 * 1024 * 1024;
+
+		/**
+		 * @param function the function applied to each message payload.
+		 */
+		public Builder(Function<byte[], byte[]> function) {
+			Assert.notNull(function, "'function' is required");
+			this.function = function;
+		}
+
+		/**
+		 * @param host the address to bind to. All addresses by default.
+		 */
+		public Builder withHost(String host) {
+			this.host = host;
+			return this;
+		}
+
+		/**
+		 * @param port the TCP port, 0 for any free port. 10382 by default.
+		 */
+		public Builder withPort(int port) {
+			this.port = port;
+			return this;
+		}
+
+		/**
+		 * @param socketPath the path of a Unix domain socket to listen on instead of a TCP port. Requires the native
+		 * epoll transport.
+		 */
+		public Builder withSocketPath(String socketPath) {
+			this.socketPath = socketPath;
+			return this;
+		}
+
+		/**
+		 * @param nativeTransport whether to use the native epoll transport for TCP, if available. True by default.
+		 */
+		public Builder withNativeTransport(boolean nativeTransport) {
+			this.nativeTransport = nativeTransport;
+			return this;
+		}
+
+		/**
+		 * @param eventLoopThreads the number of network I/O threads, 0 for Netty's default of twice the number of
+		 * processors.
+		 */
+		public Builder withEventLoopThreads(int eventLoopThreads) {
+			this.eventLoopThreads = eventLoopThreads;
+			return this;
+		}
+
+		/**
+		 * @param workerThreads the number of threads calling the function, 0 to call it on the network I/O threads.
+		 * The number of processors by default.
+		 */
+		public Builder withWorkerThreads(int workerThreads) {
+			this.workerThreads = workerThreads;
+			return this;
+		}
+
+		/**
+		 * @param workerQueueCapacity the number of call events waiting for a worker thread, beyond which they are
+		 * handled on the network I/O thread, holding back further reads. 1000 by default.
+		 */
+		public Builder withWorkerQueueCapacity(int workerQueueCapacity) {
+			this.workerQueueCapacity = workerQueueCapacity;
+			return this;
+		}
+
+		/**
+		 * @param flowControlWindow the HTTP/2 flow control window in bytes, 0 for the gRPC default (1MiB).
+		 */
+		public Builder withFlowControlWindow(int flowControlWindow) {
+			this.flowControlWindow = flowControlWindow;
+			return this;
+		}
+
+		/**
+		 * @param maxConcurrentCallsPerConnection the maximum number of concurrent calls or streams per connection, 0
+		 * for no limit.
+		 */
+		public Builder withMaxConcurrentCallsPerConnection(int maxConcurrentCallsPerConnection) {
+			this.maxConcurrentCallsPerConnection = maxConcurrentCallsPerConnection;
+			return this;
+		}
+
+		/**
+		 * @param maxMessageSize the maximum size of a request message in bytes, 0 for the gRPC default (4MiB).
+		 */
+		public Builder withMaxMessageSize(int maxMessageSize) {
+			this.maxMessageSize = maxMessageSize;
+			return this;
+		}
+
+		/**
+		 * @param keepAliveTime the time in seconds without reads after which a keepalive ping is sent to the client, 0
+		 * for none.
+		 * @param keepAliveTimeout the time in seconds to wait for the ping response before closing the connection.
+		 */
+		public Builder withKeepAlive(long keepAliveTime, long keepAliveTimeout) {
+			this.keepAliveTime = keepAliveTime;
+			this.keepAliveTimeout = keepAliveTimeout;
+			return this;
+		}
+
+		/**
+		 * @param permitKeepAliveTime the minimum time in seconds clients may send keepalive pings at, also without
+		 * calls, 0 for the gRPC default of 5 minutes with calls only. Set to match 'grpc.netty.keep-alive-time' on
+		 * the processor.
+		 */
+		public Builder withPermitKeepAliveTime(long permitKeepAliveTime) {
+			this.permitKeepAliveTime = permitKeepAliveTime;
+			return this;
+		}
+
+		/**
+		 * @param drainDelay the time in milliseconds to keep accepting calls on shutdown while ping reports
+		 * 'OUT_OF_SERVICE', so that clients checking health can stop sending first. 0 by default.
+		 */
+		public Builder withDrainDelay(long drainDelay) {
+			this.drainDelay = drainDelay;
+			return this;
+		}
+
+		/**
+		 * @param shutdownTimeout the time in milliseconds to wait for calls in progress to complete on shutdown.
+		 * 30s by default.
+		 */
+		public Builder withShutdownTimeout(long shutdownTimeout) {
+			this.shutdownTimeout = shutdownTimeout;
+			return this;
+		}
+
+		/**
+		 * @param maxChunkedSize the maximum payload size in bytes of a request reassembled from chunks by
+		 * ProcessChunked, which is held in memory. Larger requests fail before their payload is allocated. 64MiB by
+		 * default, as 'grpc.max-chunked-size' on the processor.
+		 */
+		public Builder withMaxChunkedSize(int maxChunkedSize) {
+			Assert.isTrue(maxChunkedSize > 0, "'maxChunkedSize' must be > 0");
+			this.maxChunkedSize = maxChunkedSize;
+			return this;
+		}
+
+		public SidecarServer build() {
+			Assert.isTrue(socketPath == null || epollAvailable(),
+				"Unix domain sockets require the native epoll transport");
+			return new SidecarServer(this);
+		}
+	}
+}
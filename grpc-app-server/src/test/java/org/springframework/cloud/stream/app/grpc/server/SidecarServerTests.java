@@ -0,0 +1,181 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.server;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.Empty;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorGrpc;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Chunk;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.HeaderValue;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Message;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.MessageBatch;
+import org.springframework.cloud.stream.app.grpc.support.MessageUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * @author David Turanski
+ **/
+public class SidecarServerTests {
+
+	private SidecarServer server;
+
+	private ManagedChannel channel;
+
+	@Before
+	public void setup() throws Exception {
+		server = new SidecarServer.Builder(payload -> {
+			if (payload.length == 0) {
+				throw new IllegalArgumentException("empty payload");
+			}
+			return new String(payload).toUpperCase().getBytes();
+		}).withHost("localhost").withPort(0).withWorkerThreads(2).withMaxConcurrentCallsPerConnection(10)
+			.withMaxChunkedSize(1024).withDrainDelay(200).withShutdownTimeout(1000).build();
+		server.start();
+		channel = NettyChannelBuilder.forAddress("localhost", server.getPort()).usePlaintext(true).build();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		channel.shutdownNow();
+		channel.awaitTermination(1, TimeUnit.SECONDS);
+		server.shutdown();
+	}
+
+	@Test
+	public void process() {
+		Message request = message("hello").toBuilder()
+			.putHeaders("key", HeaderValue.newBuilder().addValues("value").build()).build();
+
+		Message response = ProcessorGrpc.newBlockingStub(channel).process(request);
+
+		assertThat(response.getPayload().toStringUtf8()).isEqualTo("HELLO");
+		assertThat(response.getHeadersMap()).isEqualTo(request.getHeadersMap());
+	}
+
+	@Test
+	public void processBatch() {
+		MessageBatch response = ProcessorGrpc.newBlockingStub(channel).processBatch(MessageBatch.newBuilder()
+			.addMessages(message("apple")).addMessages(message("banana")).build());
+
+		assertThat(response.getMessagesList().stream().map(m -> m.getPayload().toStringUtf8()))
+			.containsExactly("APPLE", "BANANA");
+	}
+
+	@Test
+	public void stream() throws Exception {
+		List<String> responses = new CopyOnWriteArrayList<>();
+		CompletableFuture<Void> completed = new CompletableFuture<>();
+		StreamObserver<Message> requests = ProcessorGrpc.newStub(channel).stream(new StreamObserver<Message>() {
+
+			@Override
+			public void onNext(Message message) {
+				responses.add(message.getPayload().toStringUtf8());
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				completed.completeExceptionally(throwable);
+			}
+
+			@Override
+			public void onCompleted() {
+				completed.complete(null);
+			}
+		});
+		for (int i = 0; i < 1000; i++) {
+			requests.onNext(message("hello" + i));
+		}
+		requests.onCompleted();
+
+		completed.get(10, TimeUnit.SECONDS);
+		assertThat(responses).containsExactlyElementsOf(
+			IntStream.range(0, 1000).mapToObj(i -> "HELLO" + i).collect(Collectors.toList()));
+	}
+
+	@Test
+	public void functionFailure() {
+		assertThatThrownBy(() -> ProcessorGrpc.newBlockingStub(channel).process(message("")))
+			.matches(e -> Status.fromThrowable(e).getCode() == Status.Code.INTERNAL);
+	}
+
+	@Test
+	public void chunkedRequestExceedingMaxSizeFails() throws Exception {
+		CompletableFuture<Void> completed = new CompletableFuture<>();
+		StreamObserver<Chunk> requests = ProcessorGrpc.newStub(channel).processChunked(new StreamObserver<Chunk>() {
+
+			@Override
+			public void onNext(Chunk chunk) {
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				completed.completeExceptionally(throwable);
+			}
+
+			@Override
+			public void onCompleted() {
+				completed.complete(null);
+			}
+		});
+		char[] payload = new char[2048];
+		Arrays.fill(payload, 'a');
+		MessageUtils.toChunks(message(new String(payload)), 512).forEach(requests::onNext);
+		requests.onCompleted();
+
+		assertThatThrownBy(() -> completed.get(10, TimeUnit.SECONDS))
+			.matches(e -> Status.fromThrowable(e.getCause()).getCode() == Status.Code.INTERNAL);
+	}
+
+	@Test
+	public void drainsOnShutdown() throws Exception {
+		ProcessorGrpc.ProcessorBlockingStub stub = ProcessorGrpc.newBlockingStub(channel);
+		assertThat(stub.ping(Empty.getDefaultInstance()).getMessage()).isEqualTo(FunctionProcessorService.UP);
+
+		CompletableFuture<Void> shutdown = CompletableFuture.runAsync(server::shutdown);
+		Thread.sleep(50);
+
+		assertThat(server.isDraining()).isTrue();
+		assertThat(stub.ping(Empty.getDefaultInstance()).getMessage())
+			.isEqualTo(FunctionProcessorService.OUT_OF_SERVICE);
+		assertThat(stub.process(message("hello")).getPayload().toStringUtf8()).isEqualTo("HELLO");
+
+		shutdown.get(5, TimeUnit.SECONDS);
+		assertThatThrownBy(() -> stub.process(message("hello")))
+			.matches(e -> Status.fromThrowable(e).getCode() == Status.Code.UNAVAILABLE);
+	}
+
+	private static Message message(String payload) {
+		return Message.newBuilder().setPayload(ByteString.copyFromUtf8(payload)).build();
+	}
+}
@@ -35,8 +35,18 @@ public abstract class AbstractGrpcServer {
 	private final String name;
 
 	protected AbstractGrpcServer() {
-		name = getClass().getName();
-		ServerBuilder<?> serverBuilder = InProcessServerBuilder.forName(name).directExecutor();
+		this(null, null);
+	}
+
+	/**
+	 * @param name the server name.
+	 * @param serverBuilder a builder for a server on another transport than in-process.
+	 */
+	protected AbstractGrpcServer(String name, ServerBuilder<?> serverBuilder) {
+		this.name = name != null ? name : getClass().getName();
+		if (serverBuilder == null) {
+			serverBuilder = InProcessServerBuilder.forName(this.name).directExecutor();
+		}
 		this.server = serverBuilder.addService(getService()).build();
 	}
 
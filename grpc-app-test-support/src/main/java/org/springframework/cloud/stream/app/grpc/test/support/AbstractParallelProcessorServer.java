@@ -0,0 +1,334 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.test.support;
+
+import io.grpc.BindableService;
+import io.grpc.ServerBuilder;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.StreamObserver;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorGrpc;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Message;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.MessageBatch;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Status;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A processor server handling messages on a bounded pool of worker threads, so that messages received on one call,
+ * or on a stream, are processed in parallel. Stream responses are sent in request order if 'ordered' is set, otherwise
+ * as they complete. Batch responses are always in request order. When all workers are busy and the queue is full, the
+ * thread delivering a message processes it itself, which in turn holds back the transport. Messages received after
+ * {@link #stop()}, e.g. on a stream still open, fail with {@link io.grpc.Status#UNAVAILABLE}.
+ * <p>
+ * Subclasses implement {@link #process(Message)}. A simulated CPU cost (busy spinning) and latency (sleeping) can be
+ * added to each message, to use the server as a load testing target.
+ *
+ * @author David Turanski
+ **/
+public abstract class AbstractParallelProcessorServer extends AbstractGrpcServer {
+
+	private final ExecutorService workers;
+
+	private final int parallelism;
+
+	private final boolean ordered;
+
+	private volatile long cpuCostMicros;
+
+	private volatile long latencyMicros;
+
+	/**
+	 * @param parallelism the number of worker threads.
+	 * @param queueCapacity the number of messages waiting for a worker before they are processed by the calling thread.
+	 * @param ordered whether stream responses are sent in request order.
+	 */
+	protected AbstractParallelProcessorServer(int parallelism, int queueCapacity, boolean ordered) {
+		this(null, null, parallelism, queueCapacity, ordered);
+	}
+
+	/**
+	 * @param name the server name.
+	 * @param serverBuilder a builder for a server on another transport than in-process.
+	 * @param parallelism the number of worker threads.
+	 * @param queueCapacity the number of messages waiting for a worker before they are processed by the calling thread.
+	 * @param ordered whether stream responses are sent in request order.
+	 */
+	protected AbstractParallelProcessorServer(String name, ServerBuilder<?> serverBuilder, int parallelism,
+		int queueCapacity, boolean ordered) {
+		super(name, serverBuilder);
+		AtomicInteger threads = new AtomicInteger();
+		this.workers = new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(queueCapacity), r -> {
+			Thread thread = new Thread(r, "processor-worker-" + threads.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}, (task, executor) -> {
+			// CallerRunsPolicy would discard the task once the workers are shut down, leaving the call hanging.
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException("The server is stopped");
+			}
+			task.run();
+		});
+		this.parallelism = parallelism;
+		this.ordered = ordered;
+	}
+
+	/**
+	 * Process a message on a worker thread.
+	 * @param message the message.
+	 * @return the response.
+	 */
+	protected abstract Message process(Message message);
+
+	public long getCpuCostMicros() {
+		return cpuCostMicros;
+	}
+
+	/**
+	 * @param cpuCostMicros the time in microseconds to keep a worker busy for each message.
+	 */
+	public void setCpuCostMicros(long cpuCostMicros) {
+		this.cpuCostMicros = cpuCostMicros;
+	}
+
+	public long getLatencyMicros() {
+		return latencyMicros;
+	}
+
+	/**
+	 * @param latencyMicros the time in microseconds a worker sleeps for each message, e.g. simulating a blocking call.
+	 */
+	public void setLatencyMicros(long latencyMicros) {
+		this.latencyMicros = latencyMicros;
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+		workers.shutdown();
+	}
+
+	protected ExecutorService getWorkers() {
+		return workers;
+	}
+
+	protected int getParallelism() {
+		return parallelism;
+	}
+
+	protected boolean isOrdered() {
+		return ordered;
+	}
+
+	@Override
+	protected BindableService getService() {
+		// Called from the super constructor, so only refer to fields when handling calls.
+		return new ProcessorGrpc.ProcessorImplBase() {
+
+			@Override
+			public void ping(com.google.protobuf.Empty request, StreamObserver<Status> responseObserver) {
+				responseObserver.onNext(Status.newBuilder().setMessage("UP").build());
+				responseObserver.onCompleted();
+			}
+
+			@Override
+			public void process(Message message, StreamObserver<Message> observer) {
+				submit(message).whenComplete((response, throwable) -> {
+					if (throwable != null) {
+						observer.onError(toStatus(throwable));
+					}
+					else {
+						observer.onNext(response);
+						observer.onCompleted();
+					}
+				});
+			}
+
+			@Override
+			public void processBatch(MessageBatch batch, StreamObserver<MessageBatch> observer) {
+				List<CompletableFuture<Message>> responses = new ArrayList<>(batch.getMessagesCount());
+				for (Message message : batch.getMessagesList()) {
+					responses.add(submit(message));
+				}
+				CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).whenComplete((v, throwable) -> {
+					if (throwable != null) {
+						observer.onError(toStatus(throwable));
+						return;
+					}
+					MessageBatch.Builder response = MessageBatch.newBuilder();
+					responses.forEach(future -> response.addMessages(future.join()));
+					observer.onNext(response.build());
+					observer.onCompleted();
+				});
+			}
+
+			@Override
+			public StreamObserver<Message> stream(StreamObserver<Message> responseObserver) {
+				return new Dispatcher(responseObserver);
+			}
+		};
+	}
+
+	private CompletableFuture<Message> submit(Message message) {
+		try {
+			return CompletableFuture.supplyAsync(() -> handle(message), workers);
+		}
+		catch (RejectedExecutionException e) {
+			CompletableFuture<Message> response = new CompletableFuture<>();
+			response.completeExceptionally(stopped(e));
+			return response;
+		}
+	}
+
+	/**
+	 * Process a message on the calling thread, adding the simulated CPU cost and latency.
+	 * @param message the message.
+	 * @return the response.
+	 */
+	protected Message handle(Message message) {
+		long cost = cpuCostMicros;
+		if (cost > 0) {
+			long end = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(cost);
+			while (System.nanoTime() < end) {
+				// Busy, as a CPU bound function would be.
+			}
+		}
+		long latency = latencyMicros;
+		if (latency > 0) {
+			try {
+				TimeUnit.MICROSECONDS.sleep(latency);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		return process(message);
+	}
+
+	/**
+	 * @param e the rejection of a message received after the server is stopped.
+	 * @return the failure of its call.
+	 */
+	protected static StatusRuntimeException stopped(RejectedExecutionException e) {
+		return io.grpc.Status.UNAVAILABLE.withDescription("The server is stopped").withCause(e).asRuntimeException();
+	}
+
+	private static Throwable toStatus(Throwable throwable) {
+		Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ?
+			throwable.getCause() : throwable;
+		if (cause instanceof StatusRuntimeException) {
+			return cause;
+		}
+		return io.grpc.Status.INTERNAL.withDescription(cause.getMessage()).withCause(cause).asRuntimeException();
+	}
+
+	/**
+	 * Dispatches the messages of a stream to the workers and sends their responses, which must not be sent
+	 * concurrently, completing the stream once all have been sent.
+	 */
+	private class Dispatcher implements StreamObserver<Message> {
+
+		private final StreamObserver<Message> responseObserver;
+
+		private final Map<Long, Message> completed = new HashMap<>();
+
+		private long received;
+
+		private long sent;
+
+		private boolean halfClosed;
+
+		private boolean failed;
+
+		Dispatcher(StreamObserver<Message> responseObserver) {
+			this.responseObserver = responseObserver;
+		}
+
+		@Override
+		public void onNext(Message message) {
+			long sequence;
+			synchronized (this) {
+				sequence = received++;
+			}
+			submit(message).whenComplete((response, throwable) -> {
+				if (throwable != null) {
+					fail(throwable);
+				}
+				else {
+					complete(sequence, response);
+				}
+			});
+		}
+
+		@Override
+		public synchronized void onError(Throwable throwable) {
+			// The call is cancelled, so there is no one to respond to.
+			failed = true;
+			completed.clear();
+		}
+
+		@Override
+		public synchronized void onCompleted() {
+			halfClosed = true;
+			completeIfDone();
+		}
+
+		private synchronized void complete(long sequence, Message response) {
+			if (failed) {
+				return;
+			}
+			if (!ordered) {
+				responseObserver.onNext(response);
+				sent++;
+			}
+			else {
+				completed.put(sequence, response);
+				Message next;
+				while ((next = completed.remove(sent)) != null) {
+					responseObserver.onNext(next);
+					sent++;
+				}
+			}
+			completeIfDone();
+		}
+
+		private synchronized void fail(Throwable throwable) {
+			if (!failed) {
+				failed = true;
+				completed.clear();
+				responseObserver.onError(toStatus(throwable));
+			}
+		}
+
+		private void completeIfDone() {
+			if (halfClosed && !failed && sent == received) {
+				responseObserver.onCompleted();
+			}
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.test.support;
+
+import io.grpc.BindableService;
+import io.grpc.netty.NettyServerBuilder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerDomainSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link ProcessorServer} equivalent listening on a Unix domain socket, as a co-located sidecar would. Requires
+ * the native epoll transport, see {@link #isSupported()}.
+ *
+ * @author David Turanski
+ **/
+public class DomainSocketProcessorServer extends AbstractGrpcServer {
+
+	private final String path;
+
+	private final EventLoopGroup eventLoopGroup;
+
+	/**
+	 * @param path the socket file path.
+	 */
+	public DomainSocketProcessorServer(String path) {
+		this(path, new EpollEventLoopGroup(1, new DefaultThreadFactory("domain-socket-processor-server", true)));
+	}
+
+	private DomainSocketProcessorServer(String path, EventLoopGroup eventLoopGroup) {
+		super(path, NettyServerBuilder.forAddress(new DomainSocketAddress(path))
+			.channelType(EpollServerDomainSocketChannel.class)
+			.bossEventLoopGroup(eventLoopGroup)
+			.workerEventLoopGroup(eventLoopGroup)
+			.directExecutor());
+		this.path = path;
+		this.eventLoopGroup = eventLoopGroup;
+	}
+
+	/**
+	 * @return true if Unix domain sockets are supported on this platform.
+	 */
+	public static boolean isSupported() {
+		return Epoll.isAvailable();
+	}
+
+	/**
+	 * @return the server address, as 'unix://' followed by the socket path.
+	 */
+	public String getAddress() {
+		return "unix://" + path;
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+		eventLoopGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+		new File(path).delete();
+	}
+
+	@Override
+	protected BindableService getService() {
+		return new ProcessorServer.ProcessorService();
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.test.support;
+
+import io.grpc.BindableService;
+import io.grpc.stub.StreamObserver;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorGrpc;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Message;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.MessageBatch;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Status;
+import org.springframework.cloud.stream.app.grpc.support.ProtobufMessageBuilder;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * A {@link ProcessorServer} equivalent that delays every response by a fixed latency, to simulate a remote sidecar.
+ * Responses are scheduled rather than slept on, so any number of calls may be waiting concurrently, and stream
+ * responses keep their order. A per-message latency may be given for unary calls, so that calls complete out of order.
+ *
+ * @author David Turanski
+ **/
+public class LatencyProcessorServer extends AbstractGrpcServer {
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "latency-processor-server");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private volatile long latencyMicros;
+
+	private final ToLongFunction<Message> unaryLatency;
+
+	/**
+	 * @param latencyMicros the time in microseconds to delay each response.
+	 */
+	public LatencyProcessorServer(long latencyMicros) {
+		this.latencyMicros = latencyMicros;
+		this.unaryLatency = message -> this.latencyMicros;
+	}
+
+	/**
+	 * @param unaryLatency the time in microseconds to delay the response to a given unary request. Batch and stream
+	 * responses are not delayed.
+	 */
+	public LatencyProcessorServer(ToLongFunction<Message> unaryLatency) {
+		this.unaryLatency = unaryLatency;
+	}
+
+	public long getLatencyMicros() {
+		return latencyMicros;
+	}
+
+	public void setLatencyMicros(long latencyMicros) {
+		this.latencyMicros = latencyMicros;
+	}
+
+	@Override
+	public void stop() {
+		super.stop();
+		scheduler.shutdown();
+	}
+
+	@Override
+	protected BindableService getService() {
+		// Called from the super constructor, so only refer to fields when handling calls.
+		return new ProcessorGrpc.ProcessorImplBase() {
+
+			@Override
+			public void ping(com.google.protobuf.Empty request, StreamObserver<Status> responseObserver) {
+				responseObserver.onNext(Status.newBuilder().setMessage("UP").build());
+				responseObserver.onCompleted();
+			}
+
+			@Override
+			public void process(Message message, StreamObserver<Message> observer) {
+				Message response = toUpperCase(message);
+				delay(() -> {
+					observer.onNext(response);
+					observer.onCompleted();
+				}, unaryLatency.applyAsLong(message));
+			}
+
+			@Override
+			public void processBatch(MessageBatch batch, StreamObserver<MessageBatch> observer) {
+				MessageBatch.Builder response = MessageBatch.newBuilder();
+				for (Message message : batch.getMessagesList()) {
+					response.addMessages(toUpperCase(message));
+				}
+				delay(() -> {
+					observer.onNext(response.build());
+					observer.onCompleted();
+				});
+			}
+
+			@Override
+			public StreamObserver<Message> stream(StreamObserver<Message> responseObserver) {
+				return new StreamObserver<Message>() {
+					@Override
+					public void onNext(Message message) {
+						Message response = toUpperCase(message);
+						delay(() -> responseObserver.onNext(response));
+					}
+
+					@Override
+					public void onError(Throwable throwable) {
+						delay(() -> responseObserver.onError(throwable));
+					}
+
+					@Override
+					public void onCompleted() {
+						delay(responseObserver::onCompleted);
+					}
+				};
+			}
+		};
+	}
+
+	private void delay(Runnable response) {
+		delay(response, latencyMicros);
+	}
+
+	private void delay(Runnable response, long latencyMicros) {
+		if (latencyMicros > 0) {
+			scheduler.schedule(response, latencyMicros, TimeUnit.MICROSECONDS);
+		}
+		else {
+			scheduler.execute(response);
+		}
+	}
+
+	private static Message toUpperCase(Message message) {
+		return new ProtobufMessageBuilder().withPayload(message.getPayload().toStringUtf8().toUpperCase().getBytes())
+			.withProtobufHeaders(message.getHeadersMap())
+			.build();
+	}
+}
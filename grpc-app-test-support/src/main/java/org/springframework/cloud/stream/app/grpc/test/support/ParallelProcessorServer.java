@@ -0,0 +1,54 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.test.support;
+
+import io.grpc.ServerBuilder;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Message;
+import org.springframework.cloud.stream.app.grpc.support.ProtobufMessageBuilder;
+
+/**
+ * Converts message payloads to upper case, as {@link ProcessorServer}, on a pool of worker threads.
+ *
+ * @author David Turanski
+ **/
+public class ParallelProcessorServer extends AbstractParallelProcessorServer {
+
+	/**
+	 * @param parallelism the number of worker threads.
+	 * @param ordered whether stream responses are sent in request order.
+	 */
+	public ParallelProcessorServer(int parallelism, boolean ordered) {
+		this(null, null, parallelism, ordered);
+	}
+
+	/**
+	 * @param name the server name.
+	 * @param serverBuilder a builder for a server on another transport than in-process.
+	 * @param parallelism the number of worker threads.
+	 * @param ordered whether stream responses are sent in request order.
+	 */
+	public ParallelProcessorServer(String name, ServerBuilder<?> serverBuilder, int parallelism, boolean ordered) {
+		super(name, serverBuilder, parallelism, 2 * parallelism, ordered);
+	}
+
+	@Override
+	protected Message process(Message message) {
+		return new ProtobufMessageBuilder().withPayload(message.getPayload().toStringUtf8().toUpperCase().getBytes())
+			.withProtobufHeaders(message.getHeadersMap())
+			.build();
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.test.support;
+
+import io.grpc.BindableService;
+import io.grpc.ServerBuilder;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Message;
+import org.springframework.cloud.stream.app.grpc.processor.ReactorProcessorGrpc;
+import org.springframework.cloud.stream.app.grpc.support.ProtobufMessageBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+/**
+ * The Reactor equivalent of {@link ParallelProcessorServer}, as {@link ReactorProcessorServer} is of
+ * {@link ProcessorServer}: stream messages are converted to upper case on the workers, at most 'parallelism' at a
+ * time, and their responses sent in request order if 'ordered' is set, otherwise as they complete. Only Stream is
+ * implemented.
+ *
+ * @author David Turanski
+ **/
+public class ParallelReactorProcessorServer extends AbstractParallelProcessorServer {
+
+	/**
+	 * @param parallelism the number of worker threads.
+	 * @param ordered whether stream responses are sent in request order.
+	 */
+	public ParallelReactorProcessorServer(int parallelism, boolean ordered) {
+		this(null, null, parallelism, ordered);
+	}
+
+	/**
+	 * @param name the server name.
+	 * @param serverBuilder a builder for a server on another transport than in-process.
+	 * @param parallelism the number of worker threads.
+	 * @param ordered whether stream responses are sent in request order.
+	 */
+	public ParallelReactorProcessorServer(String name, ServerBuilder<?> serverBuilder, int parallelism,
+		boolean ordered) {
+		super(name, serverBuilder, parallelism, 2 * parallelism, ordered);
+	}
+
+	@Override
+	protected Message process(Message message) {
+		return new ProtobufMessageBuilder().withPayload(message.getPayload().toStringUtf8().toUpperCase().getBytes())
+			.withProtobufHeaders(message.getHeadersMap())
+			.build();
+	}
+
+	@Override
+	protected BindableService getService() {
+		// Called from the super constructor, so only refer to fields when handling calls.
+		return new ReactorProcessorGrpc.ProcessorImplBase() {
+
+			@Override
+			public Flux<Message> stream(Flux<Message> requests) {
+				// Not disposed, which would shut the workers down; stop() does that.
+				Scheduler workers = Schedulers.fromExecutorService(getWorkers());
+				Function<Message, Mono<Message>> dispatch = message -> Mono.fromCallable(() -> handle(message))
+					.subscribeOn(workers);
+				return (isOrdered() ? requests.flatMapSequential(dispatch, getParallelism()) :
+					requests.flatMap(dispatch, getParallelism()))
+					.onErrorMap(RejectedExecutionException.class, AbstractParallelProcessorServer::stopped);
+			}
+		};
+	}
+}
@@ -21,8 +21,12 @@ import io.grpc.BindableService;
 import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
 import org.springframework.cloud.stream.app.grpc.processor.ProcessorGrpc;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Chunk;
 import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Message;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.MessageBatch;
 import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Status;
+import org.springframework.cloud.stream.app.grpc.support.ChunkAssembler;
+import org.springframework.cloud.stream.app.grpc.support.MessageUtils;
 import org.springframework.cloud.stream.app.grpc.support.ProtobufMessageBuilder;
 
 import java.util.concurrent.atomic.AtomicInteger;
@@ -43,13 +47,17 @@ public class ProcessorServer extends AbstractGrpcServer {
 
 		@Override
 		public void process(Message message, StreamObserver<Message> observer) {
-			String result = new String(message.getPayload().toStringUtf8());
-
-			Message response = new ProtobufMessageBuilder().withPayload(result.toUpperCase().getBytes())
-				.withProtobufHeaders(message.getHeadersMap())
-				.build();
+			observer.onNext(toUpperCase(message));
+			observer.onCompleted();
+		}
 
-			observer.onNext(response);
+		@Override
+		public void processBatch(MessageBatch batch, StreamObserver<MessageBatch> observer) {
+			MessageBatch.Builder response = MessageBatch.newBuilder();
+			for (Message message : batch.getMessagesList()) {
+				response.addMessages(toUpperCase(message));
+			}
+			observer.onNext(response.build());
 			observer.onCompleted();
 		}
 
@@ -59,7 +67,7 @@ public class ProcessorServer extends AbstractGrpcServer {
 				pingCount.set(0);
 				throw new StatusRuntimeException(io.grpc.Status.UNAVAILABLE);
 			}
-			responseObserver.onNext(Status.newBuilder().setMessage("alive").build());
+			responseObserver.onNext(Status.newBuilder().setMessage("UP").build());
 			responseObserver.onCompleted();
 		}
 
@@ -84,6 +92,43 @@ public class ProcessorServer extends AbstractGrpcServer {
 				}
 			};
 		}
+
+		@Override
+		public StreamObserver<Chunk> processChunked(final StreamObserver<Chunk> responseObserver) {
+			final ChunkAssembler assembler = new ChunkAssembler();
+			return new StreamObserver<Chunk>() {
+
+				private int chunkSize;
+
+				@Override
+				public void onNext(Chunk chunk) {
+					chunkSize = Math.max(chunkSize, chunk.getData().size());
+					Message message = assembler.add(chunk);
+					if (message != null) {
+						MessageUtils.toChunks(toUpperCase(message), Math.max(chunkSize, 1))
+							.forEach(responseObserver::onNext);
+					}
+				}
+
+				@Override
+				public void onError(Throwable throwable) {
+					responseObserver.onError(throwable);
+				}
+
+				@Override
+				public void onCompleted() {
+					responseObserver.onCompleted();
+				}
+			};
+		}
+
+		private Message toUpperCase(Message message) {
+			String result = new String(message.getPayload().toStringUtf8());
+
+			return new ProtobufMessageBuilder().withPayload(result.toUpperCase().getBytes())
+				.withProtobufHeaders(message.getHeadersMap())
+				.build();
+		}
 	}
 
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.test.support;
+
+import com.google.protobuf.ByteString;
+import function.Function.Message;
+import function.Function.MessageBatch;
+import function.ReactorMessageFunctionGrpc;
+import io.grpc.BindableService;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A riff function server upper casing payloads, on the 'Call' stream and, one response frame per request frame, on
+ * the 'CallBatch' stream. Headers are returned as received. The number of messages in each request frame is recorded.
+ *
+ * @author David Turanski
+ **/
+public class RiffProcessorServer extends AbstractGrpcServer {
+
+	private final List<Integer> frameSizes = new CopyOnWriteArrayList<>();
+
+	/**
+	 * @return the number of messages in each frame received on 'CallBatch' streams, in order.
+	 */
+	public List<Integer> getFrameSizes() {
+		return frameSizes;
+	}
+
+	@Override
+	protected BindableService getService() {
+		// Called from the super constructor, so only refer to fields when handling calls.
+		return new ReactorMessageFunctionGrpc.MessageFunctionImplBase() {
+
+			@Override
+			public Flux<Message> call(Flux<Message> messages) {
+				return messages.map(RiffProcessorServer::toUpperCase);
+			}
+
+			@Override
+			public Flux<MessageBatch> callBatch(Flux<MessageBatch> frames) {
+				return frames.doOnNext(frame -> frameSizes.add(frame.getMessagesCount()))
+					.map(frame -> {
+						MessageBatch.Builder response = MessageBatch.newBuilder();
+						frame.getMessagesList().forEach(message -> response.addMessages(toUpperCase(message)));
+						return response.build();
+					});
+			}
+		};
+	}
+
+	private static Message toUpperCase(Message message) {
+		return Message.newBuilder().putAllHeaders(message.getHeadersMap())
+			.setPayload(ByteString.copyFromUtf8(message.getPayload().toStringUtf8().toUpperCase()))
+			.build();
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.test.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.grpc.ManagedChannel;
+import io.grpc.netty.NettyChannelBuilder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.unix.DomainSocketAddress;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorGrpc;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Message;
+import org.springframework.cloud.stream.app.grpc.support.ProtobufMessageBuilder;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for {@link DomainSocketProcessorServer}.
+ *
+ * @author David Turanski
+ */
+public class DomainSocketProcessorTests {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private DomainSocketProcessorServer server;
+
+	private EventLoopGroup eventLoopGroup;
+
+	private ManagedChannel channel;
+
+	@Before
+	public void setUp() throws Exception {
+		Assume.assumeTrue("Unix domain sockets are not supported", DomainSocketProcessorServer.isSupported());
+		String path = new File(temporaryFolder.getRoot(), "processor.sock").getAbsolutePath();
+		server = new DomainSocketProcessorServer(path);
+		server.start();
+
+		eventLoopGroup = new EpollEventLoopGroup(1);
+		channel = NettyChannelBuilder.forAddress(new DomainSocketAddress(path))
+			.eventLoopGroup(eventLoopGroup)
+			.channelType(EpollDomainSocketChannel.class)
+			.usePlaintext(true)
+			.build();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (channel != null) {
+			channel.shutdown().awaitTermination(1, TimeUnit.SECONDS);
+			eventLoopGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+			server.stop();
+		}
+	}
+
+	@Test
+	public void process() {
+		assertThat(server.getAddress()).startsWith("unix:///");
+
+		Message response = ProcessorGrpc.newBlockingStub(channel).process(
+			new ProtobufMessageBuilder().withPayload("hello, world".getBytes()).build());
+
+		assertThat(response.getPayload().toStringUtf8()).isEqualTo("HELLO, WORLD");
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.test.support;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorGrpc;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Message;
+import org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.MessageBatch;
+import org.springframework.cloud.stream.app.grpc.processor.ReactorProcessorGrpc;
+import org.springframework.cloud.stream.app.grpc.support.ProtobufMessageBuilder;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Unit tests for {@link ParallelProcessorServer} and {@link ParallelReactorProcessorServer}.
+ *
+ * @author David Turanski
+ **/
+public class ParallelProcessorTests extends AbstractProcessorTest {
+
+	@BeforeClass
+	public static void setup() throws Exception {
+		ParallelProcessorServer processorServer = new ParallelProcessorServer(4, true);
+		processorServer.setCpuCostMicros(100);
+		processorServer.setLatencyMicros(100);
+		init(processorServer);
+	}
+
+	@Test
+	public void process() {
+		Message response = ProcessorGrpc.newBlockingStub(getChannel()).process(message(1));
+		assertThat(response.getPayload().toStringUtf8()).isEqualTo("HELLO1");
+	}
+
+	@Test
+	public void processBatchKeepsOrder() {
+		MessageBatch batch = MessageBatch.newBuilder().addAllMessages(
+			IntStream.range(0, 100).mapToObj(ParallelProcessorTests::message).collect(Collectors.toList())).build();
+
+		MessageBatch response = ProcessorGrpc.newBlockingStub(getChannel()).processBatch(batch);
+
+		assertThat(response.getMessagesList().stream().map(m -> m.getPayload().toStringUtf8()))
+			.containsExactlyElementsOf(expected(100));
+	}
+
+	@Test
+	public void streamKeepsOrder() {
+		ReactorProcessorGrpc.ReactorProcessorStub stub = ReactorProcessorGrpc.newReactorStub(getChannel());
+
+		List<String> responses = stub.stream(Flux.range(0, 1000).map(ParallelProcessorTests::message))
+			.map(m -> m.getPayload().toStringUtf8())
+			.collectList()
+			.block(Duration.ofSeconds(10));
+
+		assertThat(responses).containsExactlyElementsOf(expected(1000));
+	}
+
+	@Test
+	public void unorderedStreamRespondsOnce() throws Exception {
+		List<String> responses = withServer(new ParallelProcessorServer("unordered", null, 4, false), channel ->
+			ReactorProcessorGrpc.newReactorStub(channel)
+				.stream(Flux.range(0, 1000).map(ParallelProcessorTests::message))
+				.map(m -> m.getPayload().toStringUtf8())
+				.collectList()
+				.block(Duration.ofSeconds(10)));
+
+		assertThat(responses).hasSize(1000).containsExactlyInAnyOrderElementsOf(expected(1000));
+	}
+
+	@Test
+	public void streamProcessesInParallel() throws Exception {
+		ParallelProcessorServer processorServer = new ParallelProcessorServer("latency", null, 8, true);
+		processorServer.setLatencyMicros(20_000);
+		int count = 64;
+
+		long start = System.nanoTime();
+		List<String> responses = withServer(processorServer, channel ->
+			ReactorProcessorGrpc.newReactorStub(channel)
+				.stream(Flux.range(0, count).map(ParallelProcessorTests::message))
+				.map(m -> m.getPayload().toStringUtf8())
+				.collectList()
+				.block(Duration.ofSeconds(10)));
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertThat(responses).containsExactlyElementsOf(expected(count));
+		// 1280ms if processed one at a time, 160ms with all 8 workers busy.
+		assertThat(elapsedMillis).isLessThan(count * 20 / 2);
+	}
+
+	@Test
+	public void reactorStreamProcessesInParallel() throws Exception {
+		ParallelReactorProcessorServer processorServer = new ParallelReactorProcessorServer("reactor-latency", null, 8,
+			true);
+		processorServer.setLatencyMicros(20_000);
+		int count = 64;
+
+		long start = System.nanoTime();
+		List<String> responses = withServer(processorServer, channel ->
+			ReactorProcessorGrpc.newReactorStub(channel)
+				.stream(Flux.range(0, count).map(ParallelProcessorTests::message))
+				.map(m -> m.getPayload().toStringUtf8())
+				.collectList()
+				.block(Duration.ofSeconds(10)));
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertThat(responses).containsExactlyElementsOf(expected(count));
+		assertThat(elapsedMillis).isLessThan(count * 20 / 2);
+	}
+
+	@Test
+	public void unorderedReactorStreamRespondsOnce() throws Exception {
+		List<String> responses = withServer(new ParallelReactorProcessorServer("reactor-unordered", null, 4, false),
+			channel -> ReactorProcessorGrpc.newReactorStub(channel)
+				.stream(Flux.range(0, 1000).map(ParallelProcessorTests::message))
+				.map(m -> m.getPayload().toStringUtf8())
+				.collectList()
+				.block(Duration.ofSeconds(10)));
+
+		assertThat(responses).hasSize(1000).containsExactlyInAnyOrderElementsOf(expected(1000));
+	}
+
+	@Test
+	public void streamFailsOnceServerIsStopped() throws Exception {
+		ParallelProcessorServer processorServer = new ParallelProcessorServer("stopped", null, 2, true);
+		processorServer.start();
+		ManagedChannel channel = InProcessChannelBuilder.forName(processorServer.getName()).build();
+		try {
+			BlockingQueue<Object> responses = new LinkedBlockingQueue<>();
+			StreamObserver<Message> requests = ProcessorGrpc.newStub(channel).stream(new StreamObserver<Message>() {
+
+				@Override
+				public void onNext(Message message) {
+					responses.add(message.getPayload().toStringUtf8());
+				}
+
+				@Override
+				public void onError(Throwable throwable) {
+					responses.add(throwable);
+				}
+
+				@Override
+				public void onCompleted() {
+				}
+			});
+			requests.onNext(message(1));
+			assertThat(responses.poll(2, TimeUnit.SECONDS)).isEqualTo("HELLO1");
+
+			// The stream stays open through a graceful shutdown, but its messages can no longer be processed.
+			processorServer.stop();
+			requests.onNext(message(2));
+			assertThat(responses.poll(2, TimeUnit.SECONDS)).isInstanceOf(Throwable.class)
+				.matches(e -> Status.fromThrowable((Throwable) e).getCode() == Status.Code.UNAVAILABLE);
+		}
+		finally {
+			channel.shutdownNow();
+		}
+	}
+
+	private static <T> T withServer(AbstractParallelProcessorServer processorServer, Function<ManagedChannel, T> call)
+		throws Exception {
+		processorServer.start();
+		ManagedChannel channel = InProcessChannelBuilder.forName(processorServer.getName()).build();
+		try {
+			return call.apply(channel);
+		}
+		finally {
+			channel.shutdownNow();
+			processorServer.stop();
+		}
+	}
+
+	private static Message message(int i) {
+		return new ProtobufMessageBuilder().withPayload(("hello" + i).getBytes()).build();
+	}
+
+	private static List<String> expected(int count) {
+		return IntStream.range(0, count).mapToObj(i -> "HELLO" + i).collect(Collectors.toList());
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.util.StringUtils;
+
+/**
+ * The error channel of a consumer binding, '&lt;destination&gt;.&lt;group&gt;.errors', for failures of messages
+ * processed after the binder's delivery has returned, e.g. by async calls or batches. The binder's error handling,
+ * such as a dead letter queue, then applies to them as it does to failures raised during delivery. The error channel
+ * of an anonymous binding has a generated name, so the global error channel, to which binding error channels are
+ * bridged, is used instead, as it is if the binder has no error channel.
+ *
+ * @author David Turanski
+ **/
+class BindingErrorChannel {
+
+	private final BeanFactory beanFactory;
+
+	private final String name;
+
+	private final MessageChannel errorChannel;
+
+	private volatile MessageChannel channel;
+
+	/**
+	 * @param beanFactory the bean factory the binder registers error channels with.
+	 * @param bindingServiceProperties the binding properties.
+	 * @param bindingName the consumer binding, e.g. 'input'.
+	 * @param errorChannel the global error channel.
+	 */
+	BindingErrorChannel(BeanFactory beanFactory, BindingServiceProperties bindingServiceProperties,
+		String bindingName, MessageChannel errorChannel) {
+		String group = bindingServiceProperties.getGroup(bindingName);
+		this.beanFactory = beanFactory;
+		this.name = StringUtils.hasText(group) ?
+			bindingServiceProperties.getBindingDestination(bindingName) + "." + group + ".errors" : null;
+		this.errorChannel = errorChannel;
+	}
+
+	public boolean send(Message<?> message) {
+		return channel().send(message);
+	}
+
+	/**
+	 * The binder registers the error channel when it binds the consumer, after this is created.
+	 */
+	private MessageChannel channel() {
+		MessageChannel channel = this.channel;
+		if (channel == null) {
+			channel = name != null && beanFactory.containsBean(name) ?
+				beanFactory.getBean(name, MessageChannel.class) : errorChannel;
+			this.channel = channel;
+		}
+		return channel;
+	}
+}
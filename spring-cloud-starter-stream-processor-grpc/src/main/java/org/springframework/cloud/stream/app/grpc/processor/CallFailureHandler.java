@@ -0,0 +1,196 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Handles failed calls to the sidecar. Calls failing with {@link Status.Code#DEADLINE_EXCEEDED} are handled as
+ * configured by {@link GrpcProperties#getOnDeadlineExceeded()}: the failure is propagated ('error'), the call is
+ * retried up to {@link GrpcProperties#getDeadlineRetries()} times ('retry') or the message is dropped ('drop').
+ * Other failures are retried if a {@link RetryPolicy} allows it. Retries wait for the policy's backoff and are subject
+ * to its budget. Calls rejected by an open {@link CircuitBreaker} are never retried.
+ *
+ * @author David Turanski
+ **/
+public class CallFailureHandler {
+
+	private static Log logger = LogFactory.getLog(CallFailureHandler.class);
+
+	private final GrpcProperties.DeadlineAction action;
+
+	private final int retries;
+
+	private final RetryPolicy retryPolicy;
+
+	private volatile ScheduledExecutorService scheduler;
+
+	public CallFailureHandler(GrpcProperties.DeadlineAction action, int retries) {
+		this(action, retries, null);
+	}
+
+	/**
+	 * @param action the action for calls exceeding their deadline.
+	 * @param retries the number of retries for calls exceeding their deadline if the action is 'retry'.
+	 * @param retryPolicy the policy for other failures, or null to not retry them.
+	 */
+	public CallFailureHandler(GrpcProperties.DeadlineAction action, int retries, RetryPolicy retryPolicy) {
+		this.action = action;
+		this.retries = retries;
+		this.retryPolicy = retryPolicy;
+	}
+
+	public static boolean isDeadlineExceeded(Throwable throwable) {
+		return Status.fromThrowable(throwable).getCode() == Status.Code.DEADLINE_EXCEEDED;
+	}
+
+	/**
+	 * Make a blocking call.
+	 * @param call the call.
+	 * @param <T> the response type.
+	 * @return the response, or null if the message is dropped.
+	 */
+	public <T> T call(Supplier<T> call) {
+		for (int attempt = 0; ; attempt++) {
+			try {
+				T response = call.get();
+				onSuccess();
+				return response;
+			}
+			catch (StatusRuntimeException e) {
+				long delay = retryDelay(e, attempt);
+				if (delay >= 0) {
+					sleep(delay, e);
+					continue;
+				}
+				if (shouldDrop(e)) {
+					return null;
+				}
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Record a successful call.
+	 */
+	public void onSuccess() {
+		if (retryPolicy != null) {
+			retryPolicy.onSuccess();
+		}
+	}
+
+	/**
+	 * @param throwable the call failure.
+	 * @param attempt the number of retries so far.
+	 * @return the time in milliseconds to wait before retrying the call, or -1 if it should not be retried.
+	 */
+	public long retryDelay(Throwable throwable, int attempt) {
+		if (CircuitBreaker.isRejected(throwable)) {
+			return -1;
+		}
+		boolean retry = isDeadlineExceeded(throwable) ?
+			action == GrpcProperties.DeadlineAction.retry && attempt < retries :
+			retryPolicy != null && retryPolicy.isRetryable(throwable, attempt);
+		if (!retry) {
+			return -1;
+		}
+		long delay = retryPolicy != null ? retryPolicy.acquire(attempt) : 0;
+		if (delay >= 0 && logger.isDebugEnabled()) {
+			logger.debug(String.format("Retrying call in %dms, attempt %d: %s", delay, attempt + 1,
+				throwable.getMessage()));
+		}
+		return delay;
+	}
+
+	/**
+	 * Run a retry after a delay, on a scheduler thread, so transport threads are not blocked. A retry without delay
+	 * is still handed to the scheduler, as running it on the failed call's thread could start the next call, and
+	 * nest its callbacks, inside the previous one's.
+	 * @param retry the retry.
+	 * @param delay the delay in milliseconds.
+	 */
+	public void retry(Runnable retry, long delay) {
+		scheduler().schedule(retry, Math.max(delay, 0), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param throwable the call failure.
+	 * @return true if the message should be dropped.
+	 */
+	public boolean shouldDrop(Throwable throwable) {
+		if (action == GrpcProperties.DeadlineAction.drop && isDeadlineExceeded(throwable)) {
+			logger.warn("Dropping message: " + throwable.getMessage());
+			return true;
+		}
+		return false;
+	}
+
+	public void shutdown() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	public GrpcProperties.DeadlineAction getAction() {
+		return action;
+	}
+
+	public int getRetries() {
+		return retries;
+	}
+
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	private ScheduledExecutorService scheduler() {
+		if (scheduler == null) {
+			synchronized (this) {
+				if (scheduler == null) {
+					scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+						Thread thread = new Thread(r, "grpc-retry");
+						thread.setDaemon(true);
+						return thread;
+					});
+				}
+			}
+		}
+		return scheduler;
+	}
+
+	private static void sleep(long delay, StatusRuntimeException failure) {
+		if (delay <= 0) {
+			return;
+		}
+		try {
+			Thread.sleep(delay);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw failure;
+		}
+	}
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the executor running gRPC call callbacks, i.e. response handling and the sends to the output channel, as
+ * configured by {@link GrpcProperties.Executor}.
+ *
+ * @author David Turanski
+ **/
+public abstract class ChannelExecutors {
+
+	private static Log logger = LogFactory.getLog(ChannelExecutors.class);
+
+	private static final String THREAD_NAME_PREFIX = "grpc-executor-";
+
+	/**
+	 * @param executor the executor properties.
+	 * @return a new executor, or null for {@link GrpcProperties.Executor.Type#direct}.
+	 */
+	public static ExecutorService newExecutor(GrpcProperties.Executor executor) {
+		int threads = executor.getThreads() > 0 ? executor.getThreads() : Runtime.getRuntime().availableProcessors();
+
+		switch (executor.getType()) {
+		case fixed:
+			return fixed(threads, executor.getQueueCapacity());
+		case fork_join:
+			return new ForkJoinPool(threads, pool -> {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName(THREAD_NAME_PREFIX + thread.getPoolIndex());
+				return thread;
+			}, null, true);
+		case virtual:
+			try {
+				return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			}
+			catch (ReflectiveOperationException e) {
+				logger.warn("Virtual threads are not supported by this JVM. Using a fixed thread pool.");
+				return fixed(threads, executor.getQueueCapacity());
+			}
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * When the queue is full, callbacks run on the transport thread, which stops reading from the sidecar until
+	 * the pool catches up.
+	 */
+	private static ExecutorService fixed(int threads, int queueCapacity) {
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(THREAD_NAME_PREFIX);
+		threadFactory.setDaemon(true);
+		return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+			queueCapacity > 0 ? new LinkedBlockingQueue<>(queueCapacity) : new LinkedBlockingQueue<>(), threadFactory,
+			new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+}
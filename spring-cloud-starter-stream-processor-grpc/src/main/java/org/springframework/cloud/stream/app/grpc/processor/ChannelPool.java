@@ -0,0 +1,182 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link Channel} that spreads calls over a fixed set of {@link ManagedChannel}s, each holding its own HTTP/2
+ * connection, so that concurrent calls are not limited by a single connection or event loop. Calls sharing a
+ * {@link #USED_CHANNELS} set, e.g. the attempts of a hedged call, go to different channels while there are unused ones.
+ *
+ * @author David Turanski
+ **/
+public class ChannelPool extends Channel {
+
+	public enum Policy {round_robin, least_outstanding}
+
+	/**
+	 * A call option holding the indexes of the channels already used by related calls. The call is made on a channel
+	 * not in the set, if there is one, and its channel is added to the set. Other channels ignore it.
+	 */
+	public static final CallOptions.Key<Set<Integer>> USED_CHANNELS = CallOptions.Key.of(
+		"grpc.processor.pool.usedChannels", null);
+
+	private final List<ManagedChannel> channels;
+
+	private final AtomicInteger[] outstanding;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	private final Policy policy;
+
+	public ChannelPool(List<ManagedChannel> channels, Policy policy) {
+		Assert.notEmpty(channels, "'channels' cannot be empty.");
+		Assert.notNull(policy, "'policy' cannot be null.");
+		this.channels = new ArrayList<>(channels);
+		this.policy = policy;
+		this.outstanding = new AtomicInteger[channels.size()];
+		for (int i = 0; i < outstanding.length; i++) {
+			outstanding[i] = new AtomicInteger();
+		}
+	}
+
+	@Override
+	public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> methodDescriptor,
+		CallOptions callOptions) {
+		Set<Integer> usedChannels = callOptions.getOption(USED_CHANNELS);
+		int index = select(usedChannels);
+		if (usedChannels != null) {
+			usedChannels.add(index);
+		}
+		return new OutstandingCountingCall<>(channels.get(index).newCall(methodDescriptor, callOptions),
+			outstanding[index]);
+	}
+
+	@Override
+	public String authority() {
+		return channels.get(0).authority();
+	}
+
+	public int size() {
+		return channels.size();
+	}
+
+	/**
+	 * @return the number of calls started and not yet closed across all channels.
+	 */
+	public int getOutstanding() {
+		int total = 0;
+		for (AtomicInteger count : outstanding) {
+			total += count.get();
+		}
+		return total;
+	}
+
+	public ChannelPool shutdown() {
+		channels.forEach(ManagedChannel::shutdown);
+		return this;
+	}
+
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		for (ManagedChannel channel : channels) {
+			if (!channel.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int select(Set<Integer> usedChannels) {
+		int start = Math.floorMod(next.getAndIncrement(), channels.size());
+		boolean exclude = usedChannels != null && usedChannels.size() < channels.size();
+
+		// Scan from a rotating start so ties are spread evenly across channels.
+		int selected = -1;
+		int min = Integer.MAX_VALUE;
+		for (int i = 0; i < channels.size() && min > 0; i++) {
+			int index = (start + i) % channels.size();
+			if (exclude && usedChannels.contains(index)) {
+				continue;
+			}
+			if (policy == Policy.round_robin) {
+				return index;
+			}
+			int count = outstanding[index].get();
+			if (count < min) {
+				min = count;
+				selected = index;
+			}
+		}
+		return selected;
+	}
+
+	private static class OutstandingCountingCall<ReqT, RespT>
+		extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
+
+		private final AtomicInteger outstanding;
+
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		OutstandingCountingCall(ClientCall<ReqT, RespT> delegate, AtomicInteger outstanding) {
+			super(delegate);
+			this.outstanding = outstanding;
+		}
+
+		@Override
+		public void start(Listener<RespT> responseListener, Metadata headers) {
+			outstanding.incrementAndGet();
+			try {
+				super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(
+					responseListener) {
+					@Override
+					public void onClose(Status status, Metadata trailers) {
+						release();
+						super.onClose(status, trailers);
+					}
+				}, headers);
+			}
+			catch (RuntimeException e) {
+				release();
+				throw e;
+			}
+		}
+
+		private void release() {
+			if (closed.compareAndSet(false, true)) {
+				outstanding.decrementAndGet();
+			}
+		}
+	}
+}
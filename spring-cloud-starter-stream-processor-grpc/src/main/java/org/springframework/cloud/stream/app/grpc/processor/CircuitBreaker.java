@@ -0,0 +1,185 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A circuit breaker for calls to the sidecar. After a number of consecutive calls fail with one of the failure codes,
+ * the circuit opens and calls are rejected without being sent, with {@link Status#UNAVAILABLE}. Once the open
+ * duration has passed, a single trial call is let through: if it succeeds the circuit closes, otherwise it opens
+ * again. A trial call that has not completed after another open duration, e.g. because its outcome was never
+ * reported, no longer holds the circuit half open: the next call is a new trial.
+ * <p>
+ * Other failures, such as an error raised by the function, show the sidecar is responding and count as successes.
+ *
+ * @author David Turanski
+ **/
+public class CircuitBreaker {
+
+	public enum State {closed, half_open, open}
+
+	private static Log logger = LogFactory.getLog(CircuitBreaker.class);
+
+	private static final Status REJECTED = Status.UNAVAILABLE.withDescription("Circuit breaker is open")
+		.withCause(new OpenException());
+
+	private final int failureThreshold;
+
+	private final long openNanos;
+
+	private final Set<Status.Code> failureCodes;
+
+	private State state = State.closed;
+
+	private int failures;
+
+	private long openedAt;
+
+	private long trialStartedAt;
+
+	private Counter rejectedCounter;
+
+	/**
+	 * @param failureThreshold the number of consecutive failures opening the circuit.
+	 * @param openDuration the time in milliseconds calls are rejected before a trial call.
+	 * @param failureCodes the status codes of failures counting towards the threshold.
+	 */
+	public CircuitBreaker(int failureThreshold, long openDuration, Status.Code[] failureCodes) {
+		Assert.isTrue(failureThreshold > 0, "'failureThreshold' must be > 0");
+		this.failureThreshold = failureThreshold;
+		this.openNanos = TimeUnit.MILLISECONDS.toNanos(openDuration);
+		this.failureCodes = failureCodes.length == 0 ? EnumSet.noneOf(Status.Code.class) :
+			EnumSet.copyOf(Arrays.asList(failureCodes));
+	}
+
+	/**
+	 * @param throwable a call failure.
+	 * @return true if the call was rejected by an open circuit.
+	 */
+	public static boolean isRejected(Throwable throwable) {
+		return Status.fromThrowable(throwable).getCause() instanceof OpenException;
+	}
+
+	/**
+	 * Publish 'grpc.processor.circuit-breaker.state' (0 closed, 1 half open, 2 open) and
+	 * 'grpc.processor.circuit-breaker.rejected'.
+	 * @param meterRegistry the registry.
+	 */
+	public void bindTo(MeterRegistry meterRegistry) {
+		Gauge.builder("grpc.processor.circuit-breaker.state", this, breaker -> breaker.getState().ordinal())
+			.description("Circuit breaker state: 0 closed, 1 half open, 2 open").register(meterRegistry);
+		rejectedCounter = Counter.builder("grpc.processor.circuit-breaker.rejected")
+			.description("Calls rejected by the open circuit breaker").register(meterRegistry);
+	}
+
+	/**
+	 * Ask to make a call. Each permitted call must be followed by {@link #onClose(Status)} or {@link #release()}.
+	 * @return true if the call may be made.
+	 */
+	public boolean tryAcquire() {
+		synchronized (this) {
+			if (state == State.closed) {
+				return true;
+			}
+			long now = System.nanoTime();
+			if (state == State.open && now - openedAt >= openNanos) {
+				state = State.half_open;
+				trialStartedAt = now;
+				return true;
+			}
+			if (state == State.half_open && now - trialStartedAt >= openNanos) {
+				logger.warn("The circuit breaker trial call has not completed, making another");
+				trialStartedAt = now;
+				return true;
+			}
+		}
+		if (rejectedCounter != null) {
+			rejectedCounter.increment();
+		}
+		return false;
+	}
+
+	/**
+	 * Record the outcome of a permitted call.
+	 * @param status the call status.
+	 */
+	public synchronized void onClose(Status status) {
+		if (status.getCode() == Status.Code.CANCELLED) {
+			// Says nothing about the sidecar.
+			release();
+			return;
+		}
+		if (!failureCodes.contains(status.getCode())) {
+			if (state != State.closed) {
+				logger.info("Closing circuit breaker, the sidecar is responding");
+			}
+			state = State.closed;
+			failures = 0;
+			return;
+		}
+		failures++;
+		if (state == State.half_open || (state == State.closed && failures >= failureThreshold)) {
+			logger.warn(String.format("Opening circuit breaker after %d failures, last: %s", failures, status));
+			state = State.open;
+			openedAt = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Return a permit for a call that was not sent, or whose outcome says nothing about the sidecar. If it was the
+	 * trial call, the next call is the trial.
+	 */
+	public synchronized void release() {
+		if (state == State.half_open) {
+			state = State.open;
+			openedAt = System.nanoTime() - openNanos;
+		}
+	}
+
+	/**
+	 * @return the status of rejected calls.
+	 */
+	public Status rejected() {
+		return REJECTED;
+	}
+
+	public synchronized State getState() {
+		return state;
+	}
+
+	/**
+	 * Marks calls rejected by an open circuit, so they are not retried.
+	 */
+	private static final class OpenException extends RuntimeException {
+
+		OpenException() {
+			super("Circuit breaker is open", null, false, false);
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Applies a {@link CircuitBreaker} to calls other than health pings, so the health indicator still reports the
+ * sidecar's state. A rejected call fails immediately with a {@link io.grpc.StatusRuntimeException}.
+ *
+ * @author David Turanski
+ **/
+public class CircuitBreakerClientInterceptor implements ClientInterceptor {
+
+	private final CircuitBreaker circuitBreaker;
+
+	public CircuitBreakerClientInterceptor(CircuitBreaker circuitBreaker) {
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	@Override
+	public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+		CallOptions callOptions, Channel next) {
+		if (method.getFullMethodName().endsWith("/Ping")) {
+			return next.newCall(method, callOptions);
+		}
+
+		if (!circuitBreaker.tryAcquire()) {
+			throw circuitBreaker.rejected().asRuntimeException();
+		}
+
+		final AtomicBoolean closed = new AtomicBoolean();
+		ClientCall<ReqT, RespT> call;
+		try {
+			call = next.newCall(method, callOptions);
+		}
+		catch (RuntimeException e) {
+			onFailure(e);
+			throw e;
+		}
+
+		return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(call) {
+
+			@Override
+			public void start(Listener<RespT> responseListener, Metadata headers) {
+				try {
+					super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(
+						responseListener) {
+
+						@Override
+						public void onClose(Status status, Metadata trailers) {
+							if (closed.compareAndSet(false, true)) {
+								circuitBreaker.onClose(status);
+							}
+							super.onClose(status, trailers);
+						}
+					}, headers);
+				}
+				catch (RuntimeException e) {
+					if (closed.compareAndSet(false, true)) {
+						onFailure(e);
+					}
+					throw e;
+				}
+			}
+		};
+	}
+
+	/**
+	 * A call rejected by the concurrency limiter never reached the sidecar, so it neither closes nor opens the circuit.
+	 */
+	private void onFailure(RuntimeException e) {
+		if (ConcurrencyLimitingClientInterceptor.isRejected(e)) {
+			circuitBreaker.release();
+		}
+		else {
+			circuitBreaker.onClose(Status.fromThrowable(e));
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+import io.grpc.ForwardingClientCall;
+import io.grpc.MethodDescriptor;
+import org.springframework.util.Assert;
+
+/**
+ * Compresses request messages with the given codec, skipping messages smaller than a minimum size, for which
+ * compression costs more than it saves.
+ *
+ * @author David Turanski
+ **/
+public class CompressionClientInterceptor implements ClientInterceptor {
+
+	private final String messageEncoding;
+
+	private final int minSize;
+
+	/**
+	 * @param messageEncoding the message encoding of a registered codec, e.g. 'gzip'.
+	 * @param minSize the minimum serialized size (bytes) of a message to compress.
+	 */
+	public CompressionClientInterceptor(String messageEncoding, int minSize) {
+		Assert.hasText(messageEncoding, "'messageEncoding' cannot be empty.");
+		this.messageEncoding = messageEncoding;
+		this.minSize = minSize;
+	}
+
+	/**
+	 * @return a registry of the gzip, identity and {@link SnappyCodec} compressors.
+	 */
+	public static CompressorRegistry compressorRegistry() {
+		CompressorRegistry compressorRegistry = CompressorRegistry.newEmptyInstance();
+		compressorRegistry.register(new Codec.Gzip());
+		compressorRegistry.register(Codec.Identity.NONE);
+		compressorRegistry.register(new SnappyCodec());
+		return compressorRegistry;
+	}
+
+	/**
+	 * @return the default decompressor registry with the {@link SnappyCodec} added.
+	 */
+	public static DecompressorRegistry decompressorRegistry() {
+		return DecompressorRegistry.getDefaultInstance().with(new SnappyCodec(), true);
+	}
+
+	@Override
+	public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+		CallOptions callOptions, Channel next) {
+		return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(
+			next.newCall(method, callOptions.withCompression(messageEncoding))) {
+
+			@Override
+			public void sendMessage(ReqT message) {
+				if (minSize > 0) {
+					setMessageCompression(!(message instanceof MessageLite) ||
+						((MessageLite) message).getSerializedSize() >= minSize);
+				}
+				super.sendMessage(message);
+			}
+		};
+	}
+}
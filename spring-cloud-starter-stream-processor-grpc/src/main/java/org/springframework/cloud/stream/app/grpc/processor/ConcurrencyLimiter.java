@@ -0,0 +1,177 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An adaptive limit on the number of calls in flight to the sidecar, based on the gradient between the long term
+ * average and the latest call latency. When latency rises above the average, e.g. because requests queue in the
+ * sidecar, the limit shrinks. While latency stays near the average and the limit is in use, the limit grows by about
+ * its square root per call. Calls failing with overload errors also shrink the limit.
+ * <p>
+ * {@link #acquire()} blocks the calling (binder consumer) thread while the limit is reached, which applies back
+ * pressure to the binder.
+ *
+ * @author David Turanski
+ **/
+public class ConcurrencyLimiter {
+
+	private static final int WARMUP_SAMPLES = 10;
+
+	private static final int LONG_WINDOW = 600;
+
+	private static final double BACKOFF_RATIO = 0.9;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition available = lock.newCondition();
+
+	private final int minLimit;
+
+	private final int maxLimit;
+
+	private final double smoothing;
+
+	private final double rttTolerance;
+
+	private double limit;
+
+	private int inFlight;
+
+	private double longRtt;
+
+	private long samples;
+
+	/**
+	 * @param initialLimit the initial limit.
+	 * @param minLimit the minimum limit.
+	 * @param maxLimit the maximum limit.
+	 * @param smoothing the weight (0-1] of each new limit estimate.
+	 * @param rttTolerance how much latency may exceed the long term average before the limit shrinks, e.g. 1.5.
+	 */
+	public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double smoothing, double rttTolerance) {
+		Assert.isTrue(minLimit > 0 && minLimit <= maxLimit, "'minLimit' must be > 0 and <= 'maxLimit'");
+		Assert.isTrue(smoothing > 0 && smoothing <= 1, "'smoothing' must be > 0 and <= 1");
+		Assert.isTrue(rttTolerance >= 1, "'rttTolerance' must be >= 1");
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.smoothing = smoothing;
+		this.rttTolerance = rttTolerance;
+		this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+	}
+
+	public void acquire() throws InterruptedException {
+		lock.lockInterruptibly();
+		try {
+			while (inFlight >= (int) limit) {
+				available.await();
+			}
+			inFlight++;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Acquire a permit without waiting.
+	 * @return true if a permit was acquired.
+	 */
+	public boolean tryAcquire() {
+		lock.lock();
+		try {
+			if (inFlight >= (int) limit) {
+				return false;
+			}
+			inFlight++;
+			return true;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Complete a call.
+	 * @param rttNanos the call latency.
+	 * @param dropped true if the call failed because the sidecar is overloaded.
+	 */
+	public void release(long rttNanos, boolean dropped) {
+		lock.lock();
+		try {
+			int inFlightBefore = inFlight;
+			inFlight--;
+			if (dropped) {
+				limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+			}
+			else {
+				update(Math.max(1, rttNanos), inFlightBefore);
+			}
+			available.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	public int getLimit() {
+		lock.lock();
+		try {
+			return (int) limit;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	public int getInFlight() {
+		lock.lock();
+		try {
+			return inFlight;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	private void update(long rtt, int inFlightBefore) {
+		samples++;
+		if (samples <= WARMUP_SAMPLES) {
+			longRtt += (rtt - longRtt) / samples;
+			return;
+		}
+		longRtt += (rtt - longRtt) / LONG_WINDOW;
+
+		// After a sustained latency increase, bring the average back down quickly once latency recovers.
+		if (longRtt > 2 * rtt) {
+			longRtt *= 0.95;
+		}
+
+		// Do not grow a limit that is not being used.
+		if (inFlightBefore < limit / 2) {
+			return;
+		}
+
+		double gradient = Math.max(0.5, Math.min(1.0, rttTolerance * longRtt / rtt));
+		double newLimit = limit * gradient + Math.sqrt(limit);
+		limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - smoothing) + newLimit * smoothing));
+	}
+}
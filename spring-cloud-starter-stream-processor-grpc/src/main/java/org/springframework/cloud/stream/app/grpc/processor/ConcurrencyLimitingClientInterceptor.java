@@ -0,0 +1,144 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Applies a {@link ConcurrencyLimiter} to unary calls, other than health pings, waiting for a permit before each call
+ * and reporting its latency on completion. Streaming calls are not limited; their message flow is controlled by
+ * back pressure.
+ *
+ * @author David Turanski
+ **/
+public class ConcurrencyLimitingClientInterceptor implements ClientInterceptor {
+
+	/**
+	 * A call option to fail the call with {@link Status#RESOURCE_EXHAUSTED} instead of waiting if the limit is
+	 * reached, for calls made from threads that must not block.
+	 */
+	public static final CallOptions.Key<Boolean> NO_WAIT = CallOptions.Key.of("grpc.processor.limiter.noWait", false);
+
+	private static final Status REJECTED = Status.RESOURCE_EXHAUSTED.withDescription("Concurrency limit reached")
+		.withCause(new RejectedException());
+
+	private final ConcurrencyLimiter limiter;
+
+	public ConcurrencyLimitingClientInterceptor(ConcurrencyLimiter limiter) {
+		this.limiter = limiter;
+	}
+
+	/**
+	 * @param throwable a call failure.
+	 * @return true if the call was rejected by the limiter without being sent.
+	 */
+	public static boolean isRejected(Throwable throwable) {
+		return Status.fromThrowable(throwable).getCause() instanceof RejectedException;
+	}
+
+	@Override
+	public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+		CallOptions callOptions, Channel next) {
+		if (method.getType() != MethodDescriptor.MethodType.UNARY || method.getFullMethodName().endsWith("/Ping")) {
+			return next.newCall(method, callOptions);
+		}
+
+		if (callOptions.getOption(NO_WAIT)) {
+			if (!limiter.tryAcquire()) {
+				throw REJECTED.asRuntimeException();
+			}
+		}
+		else {
+			try {
+				limiter.acquire();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw Status.CANCELLED.withDescription("Interrupted waiting for the concurrency limit").withCause(e)
+					.asRuntimeException();
+			}
+		}
+
+		final long start = System.nanoTime();
+		final AtomicBoolean released = new AtomicBoolean();
+		ClientCall<ReqT, RespT> call;
+		try {
+			call = next.newCall(method, callOptions);
+		}
+		catch (RuntimeException e) {
+			limiter.release(System.nanoTime() - start, false);
+			throw e;
+		}
+
+		return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(call) {
+
+			@Override
+			public void start(Listener<RespT> responseListener, Metadata headers) {
+				try {
+					super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(
+						responseListener) {
+
+						@Override
+						public void onClose(Status status, Metadata trailers) {
+							if (released.compareAndSet(false, true)) {
+								limiter.release(System.nanoTime() - start, isOverloaded(status));
+							}
+							super.onClose(status, trailers);
+						}
+					}, headers);
+				}
+				catch (RuntimeException e) {
+					if (released.compareAndSet(false, true)) {
+						limiter.release(System.nanoTime() - start, false);
+					}
+					throw e;
+				}
+			}
+		};
+	}
+
+	private static boolean isOverloaded(Status status) {
+		switch (status.getCode()) {
+		case UNAVAILABLE:
+		case RESOURCE_EXHAUSTED:
+		case DEADLINE_EXCEEDED:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * Marks calls rejected by the limiter, so they do not count as calls to the sidecar.
+	 */
+	private static final class RejectedException extends RuntimeException {
+
+		RejectedException() {
+			super("Concurrency limit reached", null, false, false);
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.MethodDescriptor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sets a deadline on unary calls that do not already have one. Streaming calls are long lived; see
+ * {@link StreamIdleMonitor}.
+ *
+ * @author David Turanski
+ **/
+public class DeadlineClientInterceptor implements ClientInterceptor {
+
+	private final long deadlineMillis;
+
+	/**
+	 * @param deadlineMillis the time in milliseconds allowed for each call.
+	 */
+	public DeadlineClientInterceptor(long deadlineMillis) {
+		this.deadlineMillis = deadlineMillis;
+	}
+
+	@Override
+	public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+		CallOptions callOptions, Channel next) {
+		if (method.getType() == MethodDescriptor.MethodType.UNARY && callOptions.getDeadline() == null) {
+			callOptions = callOptions.withDeadlineAfter(deadlineMillis, TimeUnit.MILLISECONDS);
+		}
+		return next.newCall(method, callOptions);
+	}
+}
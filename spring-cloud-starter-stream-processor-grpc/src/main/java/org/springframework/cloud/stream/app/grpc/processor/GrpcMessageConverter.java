@@ -0,0 +1,126 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import function.Function;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.cloud.stream.app.grpc.support.HeaderFilter;
+import org.springframework.cloud.stream.app.grpc.support.MessageUtils;
+import org.springframework.cloud.stream.app.grpc.support.ProtobufMessageBuilder;
+import org.springframework.cloud.stream.app.grpc.support.RiffMessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.util.ObjectUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts between Spring messages and the protobuf messages exchanged with the sidecar, as configured by
+ * {@link GrpcProperties}.
+ *
+ * @author David Turanski
+ **/
+public class GrpcMessageConverter {
+
+	private final GrpcProperties properties;
+
+	private final HeaderFilter headerFilter;
+
+	private final boolean includeHeaders;
+
+	private final Timer toProtobufTimer;
+
+	private final Timer toRiffTimer;
+
+	private final Timer fromProtobufTimer;
+
+	private final Timer fromRiffTimer;
+
+	public GrpcMessageConverter(GrpcProperties properties) {
+		this(properties, null);
+	}
+
+	/**
+	 * @param properties the properties.
+	 * @param meterRegistry if not null, conversion times are published as 'grpc.processor.conversion', tagged
+	 * 'operation'.
+	 */
+	public GrpcMessageConverter(GrpcProperties properties, MeterRegistry meterRegistry) {
+		this.properties = properties;
+		this.headerFilter = new HeaderFilter(properties.getHeaders().getInclude(),
+			properties.getHeaders().getExclude());
+		this.includeHeaders = properties.isIncludeHeaders() ||
+			!ObjectUtils.isEmpty(properties.getHeaders().getInclude());
+		this.toProtobufTimer = timer(meterRegistry, "toProtobuf");
+		this.toRiffTimer = timer(meterRegistry, "toRiff");
+		this.fromProtobufTimer = timer(meterRegistry, "fromProtobuf");
+		this.fromRiffTimer = timer(meterRegistry, "fromRiff");
+	}
+
+	public ProcessorProtos.Message toProtobuf(Message<byte[]> message) {
+		long start = start(toProtobufTimer);
+		ProtobufMessageBuilder protobufMessageBuilder = new ProtobufMessageBuilder().zeroCopy(properties.isZeroCopy())
+			.withHeaderFilter(headerFilter);
+
+		ProcessorProtos.Message protobufMessage = includeHeaders ?
+			protobufMessageBuilder.fromMessage(message).build() :
+			protobufMessageBuilder.withPayload(message.getPayload()).build();
+		stop(toProtobufTimer, start);
+		return protobufMessage;
+	}
+
+	public Function.Message toRiff(Message<byte[]> message) {
+		long start = start(toRiffTimer);
+		RiffMessageBuilder messageBuilder = new RiffMessageBuilder().zeroCopy(properties.isZeroCopy())
+			.withHeaderFilter(headerFilter);
+
+		Function.Message riffMessage = includeHeaders ?
+			messageBuilder.fromMessage(message).build() :
+			messageBuilder.withPayload(message.getPayload()).build();
+		stop(toRiffTimer, start);
+		return riffMessage;
+	}
+
+	public Message<byte[]> fromProtobuf(ProcessorProtos.Message message) {
+		long start = start(fromProtobufTimer);
+		Message<byte[]> springMessage = MessageUtils.toMessage(message, properties.isZeroCopy(), headerFilter);
+		stop(fromProtobufTimer, start);
+		return springMessage;
+	}
+
+	public Message<byte[]> fromRiff(Function.Message message) {
+		long start = start(fromRiffTimer);
+		Message<byte[]> springMessage = MessageUtils.toMessage(message, properties.isZeroCopy(), headerFilter);
+		stop(fromRiffTimer, start);
+		return springMessage;
+	}
+
+	private static Timer timer(MeterRegistry meterRegistry, String operation) {
+		return meterRegistry == null ? null : Timer.builder("grpc.processor.conversion").tag("operation", operation)
+			.description("Conversion between Spring and protobuf messages").register(meterRegistry);
+	}
+
+	private static long start(Timer timer) {
+		return timer == null ? 0 : System.nanoTime();
+	}
+
+	private static void stop(Timer timer, long start) {
+		if (timer != null) {
+			timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+	}
+}
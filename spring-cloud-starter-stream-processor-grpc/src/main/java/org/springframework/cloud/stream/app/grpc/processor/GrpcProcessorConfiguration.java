@@ -19,29 +19,66 @@ package org.springframework.cloud.stream.app.grpc.processor;
 import com.google.protobuf.Empty;
 import function.ReactorMessageFunctionGrpc;
 import io.grpc.Channel;
-import io.grpc.ManagedChannelBuilder;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.netty.NettyChannelBuilder;
 import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.actuate.health.Health;
 import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.stream.annotation.EnableBinding;
 import org.springframework.cloud.stream.annotation.Input;
 import org.springframework.cloud.stream.annotation.Output;
 import org.springframework.cloud.stream.annotation.StreamListener;
+import org.springframework.cloud.stream.app.grpc.support.ChunkAssembler;
 import org.springframework.cloud.stream.app.grpc.support.MessageUtils;
-import org.springframework.cloud.stream.app.grpc.support.ProtobufMessageBuilder;
-import org.springframework.cloud.stream.app.grpc.support.RiffMessageBuilder;
+import org.springframework.cloud.stream.config.BindingServiceProperties;
 import org.springframework.cloud.stream.messaging.Processor;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.handler.annotation.SendTo;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
 import reactor.core.publisher.Flux;
-
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * @author David Turanski
@@ -51,30 +88,55 @@ import java.util.concurrent.TimeUnit;
 @EnableConfigurationProperties(GrpcProperties.class)
 public class GrpcProcessorConfiguration {
 
+	private static Log logger = LogFactory.getLog(GrpcProcessorConfiguration.class);
+
+	/*
+	 * Orders of the client interceptors. The interceptor with the highest order sees a call first: the circuit
+	 * breaker rejects calls before they wait for the limiter, and calls are timed, and given their deadline, once
+	 * they have a permit. Interceptor beans without an order see calls before these.
+	 */
+
+	static final int CIRCUIT_BREAKER_ORDER = 400;
+
+	static final int LIMITER_ORDER = 300;
+
+	static final int METRICS_ORDER = 200;
+
+	static final int COMPRESSION_ORDER = 100;
+
+	static final int DEADLINE_ORDER = 0;
+
 	@Configuration
 	@ConditionalOnProperty(value = "grpc.stub", havingValue = "blocking", matchIfMissing = true)
 	static class BlockingStubConfiguration {
 		@Autowired
 		private ProcessorGrpc.ProcessorBlockingStub processorStub;
 
+		@Autowired
+		private CallFailureHandler failureHandler;
+
+		@Autowired(required = false)
+		private RequestHedger requestHedger;
+
 		@Autowired
 		private GrpcProperties properties;
 
+		@Autowired
+		private GrpcMessageConverter messageConverter;
+
 		@Bean
-		public ProcessorGrpc.ProcessorBlockingStub processorStub(Channel grpcChannel) {
-			return ProcessorGrpc.newBlockingStub(grpcChannel);
+		public ProcessorGrpc.ProcessorBlockingStub processorStub(Channel grpcChannel,
+			ObjectProvider<ClientInterceptor> clientInterceptors) {
+			return ProcessorGrpc.newBlockingStub(intercept(grpcChannel, clientInterceptors));
 		}
 
 		@StreamListener(Processor.INPUT)
 		@SendTo(Processor.OUTPUT)
 		public Object process(final Message<byte[]> request) {
-			ProtobufMessageBuilder protobufMessageBuilder = new ProtobufMessageBuilder();
-
-			ProcessorProtos.Message protobufMessage = properties.isIncludeHeaders() ?
-				protobufMessageBuilder.fromMessage(request).build() :
-				protobufMessageBuilder.withPayload(request.getPayload()).build();
-
-			return MessageUtils.toMessage(processorStub.process(protobufMessage));
+			ProcessorProtos.Message protobufMessage = messageConverter.toProtobuf(request);
+			ProcessorProtos.Message response = failureHandler.call(() -> requestHedger != null ?
+				requestHedger.process(protobufMessage) : processorStub.process(protobufMessage));
+			return response != null ? messageConverter.fromProtobuf(response) : null;
 		}
 	}
 
@@ -85,43 +147,164 @@ public class GrpcProcessorConfiguration {
 		@Autowired
 		private ProcessorGrpc.ProcessorStub processorStub;
 
+		@Autowired
+		private InFlightWindow inFlightWindow;
+
+		@Autowired(required = false)
+		private ReorderBuffer reorderBuffer;
+
+		@Autowired
+		private CallFailureHandler failureHandler;
+
+		@Autowired(required = false)
+		private RequestHedger requestHedger;
+
+		@Autowired
+		private BindingErrorChannel errorChannel;
+
 		@Autowired
 		private Processor channels;
 
 		@Autowired
 		private GrpcProperties properties;
 
+		@Autowired
+		private GrpcMessageConverter messageConverter;
+
 		@Bean
-		public ProcessorGrpc.ProcessorStub processorStub(Channel grpcChannel) {
-			return ProcessorGrpc.newStub(grpcChannel);
+		public ProcessorGrpc.ProcessorStub processorStub(Channel grpcChannel,
+			ObjectProvider<ClientInterceptor> clientInterceptors) {
+			return ProcessorGrpc.newStub(intercept(grpcChannel, clientInterceptors));
+		}
+
+		@Bean
+		public InFlightWindow inFlightWindow(ObjectProvider<MeterRegistry> meterRegistry) {
+			InFlightWindow inFlightWindow = new InFlightWindow(properties.getAsync().getMaxInFlight());
+			meterRegistry.ifAvailable(registry -> Gauge.builder("grpc.processor.in-flight", inFlightWindow,
+				InFlightWindow::getInFlight).tag("stub", "async").description("Calls in flight to the sidecar")
+				.register(registry));
+			return inFlightWindow;
+		}
+
+		@Bean
+		@ConditionalOnProperty("grpc.async.ordered")
+		public ReorderBuffer reorderBuffer(ObjectProvider<MeterRegistry> meterRegistry) {
+			// The in-flight window is all that bounds the results waiting for a slow call.
+			Assert.isTrue(properties.getAsync().getMaxInFlight() > 0,
+				"'grpc.async.max-in-flight' must be > 0 when 'grpc.async.ordered' is set");
+			MeterRegistry registry = meterRegistry.getIfAvailable();
+			if (registry == null) {
+				return new ReorderBuffer(null);
+			}
+			ReorderBuffer reorderBuffer = new ReorderBuffer(Timer.builder("grpc.processor.reorder.wait")
+				.description("Time completed calls wait for earlier calls").register(registry));
+			Gauge.builder("grpc.processor.reorder.depth", reorderBuffer, ReorderBuffer::getDepth)
+				.description("Completed calls waiting for earlier calls").register(registry);
+			return reorderBuffer;
 		}
 
 		@StreamListener(Processor.INPUT)
 		public void process(final Message<byte[]> request) {
-			ProtobufMessageBuilder protobufMessageBuilder = new ProtobufMessageBuilder();
+			ProcessorProtos.Message protobufMessage = messageConverter.toProtobuf(request);
 
-			org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Message protobufMessage = properties.isIncludeHeaders() ?
-				protobufMessageBuilder.fromMessage(request).build() :
-				protobufMessageBuilder.withPayload(request.getPayload()).build();
+			try {
+				inFlightWindow.acquire();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new MessagingException(request, "Interrupted waiting for a call to complete", e);
+			}
 
-			processorStub.process(protobufMessage,
-				new StreamObserver<org.springframework.cloud.stream.app.grpc.processor.ProcessorProtos.Message>() {
+			final ReorderBuffer.Ticket ticket = reorderBuffer != null ? reorderBuffer.next(orderKey(request)) : null;
+			call(request, protobufMessage, ticket, 0);
+		}
 
-					@Override
-					public void onNext(ProcessorProtos.Message message) {
-						channels.output().send(MessageUtils.toMessage(message));
-					}
+		private void call(Message<byte[]> request, ProcessorProtos.Message protobufMessage,
+			ReorderBuffer.Ticket ticket, int attempt) {
+			StreamObserver<ProcessorProtos.Message> responseObserver = new StreamObserver<ProcessorProtos.Message>() {
 
-					@Override
-					public void onError(Throwable throwable) {
-						throw new MessagingException(request, throwable);
+				private ProcessorProtos.Message response;
+
+				@Override
+				public void onNext(ProcessorProtos.Message message) {
+					if (ticket == null) {
+						channels.output().send(messageConverter.fromProtobuf(message));
+					}
+					else {
+						response = message;
+					}
+				}
+
+				@Override
+				public void onError(Throwable throwable) {
+					long delay = failureHandler.retryDelay(throwable, attempt);
+					if (delay >= 0) {
+						failureHandler.retry(() -> call(request, protobufMessage, ticket, attempt + 1), delay);
+						return;
 					}
+					complete(ticket, () -> {
+					});
+					if (!failureHandler.shouldDrop(throwable)) {
+						errorChannel.send(new ErrorMessage(new MessagingException(request,
+							CallFailureHandler.isDeadlineExceeded(throwable) ? "Deadline exceeded calling the sidecar" :
+								"Failed to call the sidecar", throwable)));
+					}
+				}
+
+				@Override
+				public void onCompleted() {
+					failureHandler.onSuccess();
+					complete(ticket, () -> {
+						if (response != null) {
+							channels.output().send(messageConverter.fromProtobuf(response));
+						}
+					});
+				}
+			};
+
+			// Retries run on the single retry thread, which must not wait for the concurrency limit, so they fail with
+			// RESOURCE_EXHAUSTED instead.
+			boolean retry = attempt > 0;
+			try {
+				if (requestHedger != null) {
+					requestHedger.process(protobufMessage, responseObserver, retry);
+				}
+				else {
+					(retry ? processorStub.withOption(ConcurrencyLimitingClientInterceptor.NO_WAIT, true) :
+						processorStub).process(protobufMessage, responseObserver);
+				}
+			}
+			catch (RuntimeException e) {
+				// e.g. rejected by the circuit breaker; handled like any other failure.
+				responseObserver.onError(e);
+			}
+		}
 
-					@Override
-					public void onCompleted() {
+		private Object orderKey(Message<?> request) {
+			String orderKeyHeader = properties.getAsync().getOrderKeyHeader();
+			return orderKeyHeader != null ? request.getHeaders().get(orderKeyHeader) : null;
+		}
 
+		private void complete(ReorderBuffer.Ticket ticket, Runnable action) {
+			if (ticket == null) {
+				try {
+					action.run();
+				}
+				finally {
+					inFlightWindow.release();
+				}
+			}
+			else {
+				// Hold the permit until the result leaves the buffer, so the buffer is bounded by the window.
+				reorderBuffer.complete(ticket, () -> {
+					try {
+						action.run();
+					}
+					finally {
+						inFlightWindow.release();
 					}
 				});
+			}
 		}
 
 	}
@@ -132,22 +315,28 @@ public class GrpcProcessorConfiguration {
 		@Autowired
 		private ReactorProcessorGrpc.ReactorProcessorStub processorStub;
 
+		@Autowired
+		private ObjectProvider<MeterRegistry> meterRegistry;
+
 		@Autowired
 		private GrpcProperties properties;
 
+		@Autowired
+		private GrpcMessageConverter messageConverter;
+
 		@Bean
-		public ReactorProcessorGrpc.ReactorProcessorStub processorStub(Channel grpcChannel) {
-			return ReactorProcessorGrpc.newReactorStub(grpcChannel);
+		public ReactorProcessorGrpc.ReactorProcessorStub processorStub(Channel grpcChannel,
+			ObjectProvider<ClientInterceptor> clientInterceptors) {
+			return ReactorProcessorGrpc.newReactorStub(intercept(grpcChannel, clientInterceptors));
 		}
 
 		@StreamListener
 		@Output(Processor.OUTPUT)
 		public Flux<Message<byte[]>> process(@Input(Processor.INPUT) final Flux<Message<byte[]>> request) {
-
-			ProtobufMessageBuilder protobufMessageBuilder = new ProtobufMessageBuilder();
-			return processorStub.stream(request.map(message -> properties.isIncludeHeaders() ?
-				protobufMessageBuilder.fromMessage(message).build() :
-				protobufMessageBuilder.withPayload(message.getPayload()).build())).map(MessageUtils::toMessage);
+			assertStallRetry(properties);
+			return shardedStream(properties).apply(request, (shard, requests) -> openStream(properties,
+				meterRegistry, shard, requests.map(messageConverter::toProtobuf), processorStub::stream))
+				.map(messageConverter::fromProtobuf);
 		}
 	}
 
@@ -157,31 +346,380 @@ public class GrpcProcessorConfiguration {
 		@Autowired
 		private ReactorMessageFunctionGrpc.ReactorMessageFunctionStub processorStub;
 
+		@Autowired
+		private ObjectProvider<MeterRegistry> meterRegistry;
+
 		@Autowired
 		private GrpcProperties properties;
 
+		@Autowired
+		private GrpcMessageConverter messageConverter;
+
 		@Bean
-		public ReactorMessageFunctionGrpc.ReactorMessageFunctionStub processorStub(Channel grpcChannel) {
-			return ReactorMessageFunctionGrpc.newReactorStub(grpcChannel);
+		public ReactorMessageFunctionGrpc.ReactorMessageFunctionStub processorStub(Channel grpcChannel,
+			ObjectProvider<ClientInterceptor> clientInterceptors) {
+			return ReactorMessageFunctionGrpc.newReactorStub(intercept(grpcChannel, clientInterceptors));
 		}
 
 		@StreamListener
 		@Output(Processor.OUTPUT)
 		public Flux<Message<byte[]>> process(@Input(Processor.INPUT) final Flux<Message<byte[]>> request) {
+			assertStallRetry(properties);
+			if (properties.getRiff().isBulk()) {
+				return shardedStream(properties).apply(request, (shard, requests) -> openStream(properties,
+					meterRegistry, shard, frames(requests.map(messageConverter::toRiff)), processorStub::callBatch))
+					.flatMapIterable(function.Function.MessageBatch::getMessagesList)
+					.map(messageConverter::fromRiff);
+			}
+
+			return shardedStream(properties).apply(request, (shard, requests) -> openStream(properties,
+				meterRegistry, shard, requests.map(messageConverter::toRiff), processorStub::call))
+				.map(messageConverter::fromRiff);
+		}
+
+		/**
+		 * Groups messages into frames of up to 'grpc.batch.size' and 'grpc.batch.max-bytes', sending a partial frame
+		 * after 'grpc.batch.linger-time'.
+		 */
+		private Flux<function.Function.MessageBatch> frames(Flux<function.Function.Message> messages) {
+			return messages.bufferTimeout(properties.getBatch().getSize(),
+				Duration.ofMillis(properties.getBatch().getLingerTime()))
+				.flatMapIterable(batch -> splitFrames(batch, properties.getBatch().getMaxBytes()));
+		}
+	}
+
+	/**
+	 * Splits messages into frames whose messages add up to at most 'maxBytes' serialized bytes, or 0 for no limit. A
+	 * message larger than that is sent in a frame of its own.
+	 */
+	static List<function.Function.MessageBatch> splitFrames(List<function.Function.Message> messages,
+		long maxBytes) {
+		List<function.Function.MessageBatch> frames = new ArrayList<>();
+		function.Function.MessageBatch.Builder frame = function.Function.MessageBatch.newBuilder();
+		long bytes = 0;
+		for (function.Function.Message message : messages) {
+			int size = message.getSerializedSize();
+			if (maxBytes > 0 && frame.getMessagesCount() > 0 && bytes + size > maxBytes) {
+				frames.add(frame.build());
+				frame = function.Function.MessageBatch.newBuilder();
+				bytes = 0;
+			}
+			frame.addMessages(message);
+			bytes += size;
+		}
+		if (frame.getMessagesCount() > 0) {
+			frames.add(frame.build());
+		}
+		return frames;
+	}
+
+	@Configuration
+	@ConditionalOnProperty(value = "grpc.stub", havingValue = "chunked")
+	public static class ChunkedStubConfiguration {
+
+		@Autowired
+		private ReactorProcessorGrpc.ReactorProcessorStub processorStub;
+
+		@Autowired
+		private CallFailureHandler failureHandler;
+
+		@Autowired
+		private GrpcProperties properties;
+
+		@Autowired
+		private GrpcMessageConverter messageConverter;
+
+		@Bean
+		public ReactorProcessorGrpc.ReactorProcessorStub processorStub(Channel grpcChannel,
+			ObjectProvider<ClientInterceptor> clientInterceptors) {
+			return ReactorProcessorGrpc.newReactorStub(intercept(grpcChannel, clientInterceptors));
+		}
+
+		@StreamListener(Processor.INPUT)
+		@SendTo(Processor.OUTPUT)
+		public Object process(final Message<byte[]> request) {
+			ProcessorProtos.Message protobufMessage = messageConverter.toProtobuf(request);
+			ProcessorProtos.Message response = failureHandler.call(() -> processChunked(protobufMessage));
+			return response != null ? messageConverter.fromProtobuf(response) : null;
+		}
+
+		/**
+		 * Send the message in chunks on a new stream, as gRPC flow control allows, and reassemble the response as
+		 * its chunks arrive. A stream completing without a whole message fails, rather than returning null, which
+		 * would drop the message.
+		 */
+		private ProcessorProtos.Message processChunked(ProcessorProtos.Message protobufMessage) {
+			ReactorProcessorGrpc.ReactorProcessorStub stub = properties.getDeadline() > 0 ?
+				processorStub.withDeadlineAfter(properties.getDeadline(), TimeUnit.MILLISECONDS) : processorStub;
+			ChunkAssembler assembler = new ChunkAssembler(properties.getMaxChunkedSize());
+			return stub.processChunked(Flux.fromIterable(MessageUtils.toChunks(protobufMessage,
+				properties.getChunkSize())))
+				.<ProcessorProtos.Message>handle((chunk, sink) -> {
+					ProcessorProtos.Message message = assembler.add(chunk);
+					if (message != null) {
+						sink.next(message);
+					}
+				})
+				.next()
+				.switchIfEmpty(Mono.defer(() -> Mono.error(Status.INTERNAL
+					.withDescription("The sidecar completed the chunked response without a whole message")
+					.asRuntimeException())))
+				.block();
+		}
+	}
+
+	@Configuration
+	@ConditionalOnProperty(value = "grpc.stub", havingValue = "batch")
+	public static class BatchStubConfiguration {
+
+		@Autowired
+		private ProcessorGrpc.ProcessorBlockingStub processorStub;
+
+		@Autowired
+		private MessageBatcher<BatchedMessage> messageBatcher;
+
+		@Autowired
+		private CallFailureHandler failureHandler;
+
+		@Autowired
+		private BindingErrorChannel errorChannel;
+
+		@Autowired
+		private Processor channels;
+
+		@Autowired
+		private GrpcProperties properties;
+
+		@Autowired
+		private GrpcMessageConverter messageConverter;
+
+		@Bean
+		public ProcessorGrpc.ProcessorBlockingStub processorStub(Channel grpcChannel,
+			ObjectProvider<ClientInterceptor> clientInterceptors) {
+			return ProcessorGrpc.newBlockingStub(intercept(grpcChannel, clientInterceptors));
+		}
 
-			RiffMessageBuilder messageBuilder = new RiffMessageBuilder();
-			return processorStub.call(request.share().map(message -> properties.isIncludeHeaders() ?
-				messageBuilder.fromMessage(message).build() :
-				messageBuilder.withPayload(message.getPayload()).build())).share().map(MessageUtils::toMessage);
+		@Bean
+		public MessageBatcher<BatchedMessage> messageBatcher() {
+			return new MessageBatcher<>(properties.getBatch().getSize(), properties.getBatch().getMaxBytes(),
+				properties.getBatch().getLingerTime(), message -> message.protobufMessage.getSerializedSize(),
+				this::processBatch);
+		}
+
+		@StreamListener(Processor.INPUT)
+		public void process(final Message<byte[]> request) {
+			messageBatcher.add(new BatchedMessage(request, messageConverter.toProtobuf(request)));
 		}
+
+		private void processBatch(List<BatchedMessage> messages) {
+			ProcessorProtos.MessageBatch request = ProcessorProtos.MessageBatch.newBuilder()
+				.addAllMessages(messages.stream().map(message -> message.protobufMessage).collect(Collectors.toList()))
+				.build();
+			ProcessorProtos.MessageBatch response;
+			try {
+				response = failureHandler.call(() -> processorStub.processBatch(request));
+			}
+			catch (RuntimeException e) {
+				fail(messages, CallFailureHandler.isDeadlineExceeded(e) ? "Deadline exceeded calling the sidecar" :
+					"Failed to call the sidecar", e);
+				return;
+			}
+			if (response == null) {
+				return;
+			}
+			if (response.getMessagesCount() != request.getMessagesCount()) {
+				fail(messages, String.format("The sidecar returned %d messages for a batch of %d",
+					response.getMessagesCount(), request.getMessagesCount()), null);
+				return;
+			}
+			for (int i = 0; i < messages.size(); i++) {
+				// Keep the request headers, as @SendTo does for the other stubs.
+				channels.output().send(MessageBuilder.fromMessage(messageConverter.fromProtobuf(
+					response.getMessages(i))).copyHeadersIfAbsent(messages.get(i).request.getHeaders()).build());
+			}
+		}
+
+		private void fail(List<BatchedMessage> messages, String description, Throwable cause) {
+			for (BatchedMessage message : messages) {
+				errorChannel.send(new ErrorMessage(new MessagingException(message.request, description, cause)));
+			}
+		}
+	}
+
+	/**
+	 * A message waiting to be batched, with the request it was converted from.
+	 */
+	static class BatchedMessage {
+
+		private final Message<byte[]> request;
+
+		private final ProcessorProtos.Message protobufMessage;
+
+		BatchedMessage(Message<byte[]> request, ProcessorProtos.Message protobufMessage) {
+			this.request = request;
+			this.protobufMessage = protobufMessage;
+		}
+	}
+
+	@Bean
+	public BindingErrorChannel bindingErrorChannel(BeanFactory beanFactory,
+		BindingServiceProperties bindingServiceProperties,
+		@Qualifier(IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME) MessageChannel errorChannel) {
+		return new BindingErrorChannel(beanFactory, bindingServiceProperties, Processor.INPUT, errorChannel);
+	}
+
+	@Bean
+	public GrpcMessageConverter grpcMessageConverter(GrpcProperties properties,
+		ObjectProvider<MeterRegistry> meterRegistry) {
+		return new GrpcMessageConverter(properties,
+			properties.getMetrics().isEnabled() ? meterRegistry(meterRegistry) : null);
+	}
+
+	@Bean(destroyMethod = "shutdown")
+	public CallFailureHandler callFailureHandler(GrpcProperties properties,
+		ObjectProvider<MeterRegistry> meterRegistry) {
+		GrpcProperties.Retry retry = properties.getRetry();
+		RetryPolicy retryPolicy = null;
+		if (retry.isEnabled()) {
+			retryPolicy = new RetryPolicy(retry.getMaxAttempts(), retry.getInitialBackoff(), retry.getMaxBackoff(),
+				retry.getMultiplier(), retry.getCodes(), retry.getBudget());
+			meterRegistry.ifAvailable(retryPolicy::bindTo);
+		}
+		return new CallFailureHandler(properties.getOnDeadlineExceeded(), properties.getDeadlineRetries(),
+			retryPolicy);
+	}
+
+	@Bean
+	@Order(DEADLINE_ORDER)
+	@ConditionalOnExpression("${grpc.deadline:0} > 0")
+	public DeadlineClientInterceptor deadlineClientInterceptor(GrpcProperties properties) {
+		return new DeadlineClientInterceptor(properties.getDeadline());
+	}
+
+	@Bean(destroyMethod = "shutdown")
+	@ConditionalOnProperty("grpc.hedging.enabled")
+	public RequestHedger requestHedger(GrpcProperties properties, Channel grpcChannel,
+		ObjectProvider<ClientInterceptor> clientInterceptors, ObjectProvider<MeterRegistry> meterRegistry) {
+		GrpcProperties.Hedging hedging = properties.getHedging();
+		RequestHedger requestHedger = new RequestHedger(
+			ProcessorGrpc.newStub(intercept(grpcChannel, clientInterceptors)), hedging.getDelay(),
+			hedging.getPercentile(), hedging.getMaxHedges(), hedging.getBudget());
+		meterRegistry.ifAvailable(requestHedger::bindTo);
+		return requestHedger;
+	}
+
+	@Bean
+	@Order(METRICS_ORDER)
+	@ConditionalOnProperty(value = "grpc.metrics.enabled", matchIfMissing = true)
+	public MetricsClientInterceptor metricsClientInterceptor(GrpcProperties properties,
+		ObjectProvider<MeterRegistry> meterRegistry) {
+		return new MetricsClientInterceptor(meterRegistry(meterRegistry), properties.getStub().name());
+	}
+
+	/**
+	 * The registry metrics are published to: the application's, or the global registry if there is none.
+	 */
+	private static MeterRegistry meterRegistry(ObjectProvider<MeterRegistry> meterRegistry) {
+		return meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+	}
+
+	@Bean
+	@Order(COMPRESSION_ORDER)
+	@ConditionalOnExpression("'${grpc.compression.codec:none}' != 'none'")
+	public CompressionClientInterceptor compressionClientInterceptor(GrpcProperties properties) {
+		return new CompressionClientInterceptor(properties.getCompression().getCodec().name(),
+			properties.getCompression().getMinSize());
 	}
 
+	@Bean
+	@ConditionalOnProperty("grpc.limiter.enabled")
+	public ConcurrencyLimiter concurrencyLimiter(GrpcProperties properties,
+		ObjectProvider<MeterRegistry> meterRegistry) {
+		GrpcProperties.Limiter limiter = properties.getLimiter();
+		ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(limiter.getInitialLimit(),
+			limiter.getMinLimit(), limiter.getMaxLimit(), limiter.getSmoothing(), limiter.getRttTolerance());
+		meterRegistry.ifAvailable(registry -> {
+			Gauge.builder("grpc.processor.concurrency.limit", concurrencyLimiter, ConcurrencyLimiter::getLimit)
+				.description("Adaptive limit of calls in flight to the sidecar").register(registry);
+			Gauge.builder("grpc.processor.concurrency.in-flight", concurrencyLimiter,
+				ConcurrencyLimiter::getInFlight).description("Calls in flight within the adaptive limit")
+				.register(registry);
+		});
+		return concurrencyLimiter;
+	}
+
+	@Bean
+	@Order(LIMITER_ORDER)
+	@ConditionalOnProperty("grpc.limiter.enabled")
+	public ConcurrencyLimitingClientInterceptor concurrencyLimitingClientInterceptor(
+		ConcurrencyLimiter concurrencyLimiter) {
+		return new ConcurrencyLimitingClientInterceptor(concurrencyLimiter);
+	}
+
+	@Bean
+	@ConditionalOnProperty("grpc.circuit-breaker.enabled")
+	public CircuitBreaker circuitBreaker(GrpcProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+		GrpcProperties.CircuitBreaker circuitBreaker = properties.getCircuitBreaker();
+		CircuitBreaker breaker = new CircuitBreaker(circuitBreaker.getFailureThreshold(),
+			circuitBreaker.getOpenDuration(), circuitBreaker.getFailureCodes());
+		meterRegistry.ifAvailable(breaker::bindTo);
+		return breaker;
+	}
 
 	@Bean
-	@ConditionalOnProperty(name = "grpc.host")
-	public Channel grpcChannel(GrpcProperties properties) {
-		ManagedChannelBuilder<?> managedChannelBuilder = ManagedChannelBuilder.forAddress(properties.getHost(),
-			properties.getPort()).usePlaintext(properties.isPlainText()).directExecutor();
+	@Order(CIRCUIT_BREAKER_ORDER)
+	@ConditionalOnProperty("grpc.circuit-breaker.enabled")
+	public CircuitBreakerClientInterceptor circuitBreakerClientInterceptor(CircuitBreaker circuitBreaker) {
+		return new CircuitBreakerClientInterceptor(circuitBreaker);
+	}
+
+	@Bean(destroyMethod = "shutdown")
+	@ConditionalOnExpression("'${grpc.executor.type:direct}' != 'direct'")
+	public ExecutorService grpcExecutor(GrpcProperties properties, ObjectProvider<MeterRegistry> meterRegistry) {
+		ExecutorService executor = ChannelExecutors.newExecutor(properties.getExecutor());
+		meterRegistry.ifAvailable(registry -> new ExecutorServiceMetrics(executor, "grpc.processor",
+			Tags.of("type", properties.getExecutor().getType().name())).bindTo(registry));
+		return executor;
+	}
+
+	@Bean(destroyMethod = "shutdown")
+	@Conditional(OnSidecarAddressCondition.class)
+	public NettyTransport grpcNettyTransport(GrpcProperties properties) {
+		return new NettyTransport(properties.getNetty());
+	}
+
+	@Bean
+	@Conditional(OnSidecarAddressCondition.class)
+	public Channel grpcChannel(GrpcProperties properties, NettyTransport grpcNettyTransport,
+		@Qualifier("grpcExecutor") ObjectProvider<ExecutorService> grpcExecutor) {
+		ExecutorService executor = grpcExecutor.getIfAvailable();
+		List<String> addresses = properties.getPool().getAddresses();
+		if (addresses.isEmpty()) {
+			addresses = Collections.singletonList(StringUtils.hasText(properties.getAddress()) ?
+				properties.getAddress() : properties.getHost() + ":" + properties.getPort());
+		}
+
+		if (addresses.size() == 1 && properties.getPool().getSize() <= 1) {
+			return managedChannel(addresses.get(0), properties, grpcNettyTransport, executor);
+		}
+
+		List<ManagedChannel> channels = new ArrayList<>();
+		for (String address : addresses) {
+			for (int i = 0; i < Math.max(1, properties.getPool().getSize()); i++) {
+				channels.add(managedChannel(address, properties, grpcNettyTransport, executor));
+			}
+		}
+		return new ChannelPool(channels, properties.getPool().getPolicy());
+	}
+
+	private static ManagedChannel managedChannel(String address, GrpcProperties properties,
+		NettyTransport nettyTransport, ExecutorService executor) {
+		NettyChannelBuilder managedChannelBuilder = nettyTransport.channelBuilder(address)
+			.usePlaintext(properties.isPlainText())
+			.compressorRegistry(CompressionClientInterceptor.compressorRegistry())
+			.decompressorRegistry(CompressionClientInterceptor.decompressorRegistry());
+		managedChannelBuilder = executor != null ? managedChannelBuilder.executor(executor) :
+			managedChannelBuilder.directExecutor();
 		if (properties.getIdleTimeout() > 0) {
 			managedChannelBuilder = managedChannelBuilder.idleTimeout(properties.getIdleTimeout(), TimeUnit.SECONDS);
 		}
@@ -192,16 +730,138 @@ public class GrpcProcessorConfiguration {
 	}
 
 	@Bean
-	public ProcessorGrpc.ProcessorBlockingStub pingStub(Channel grpcChannel) {
-		return ProcessorGrpc.newBlockingStub(grpcChannel);
+	public ProcessorGrpc.ProcessorBlockingStub pingStub(Channel grpcChannel,
+		ObjectProvider<ClientInterceptor> clientInterceptors) {
+		return ProcessorGrpc.newBlockingStub(intercept(grpcChannel, clientInterceptors));
+	}
+
+	/**
+	 * Applies any {@link ClientInterceptor} beans to calls on the sidecar channel. The last interceptor sees a call
+	 * first, so those with the highest order are applied outermost.
+	 */
+	static Channel intercept(Channel grpcChannel, ObjectProvider<ClientInterceptor> clientInterceptors) {
+		List<ClientInterceptor> interceptors = clientInterceptors.orderedStream().collect(Collectors.toList());
+		return interceptors.isEmpty() ? grpcChannel : ClientInterceptors.intercept(grpcChannel, interceptors);
+	}
+
+	/**
+	 * Distributes messages over 'grpc.streaming.parallelism' streams.
+	 */
+	static ShardedStream shardedStream(GrpcProperties properties) {
+		return new ShardedStream(properties.getStreaming().getParallelism(),
+			properties.getStreaming().getPartitionKeyHeader());
 	}
 
+	/**
+	 * Fails startup if stalled streams are to be retried without 'grpc.streaming.reconnect', which keeps their
+	 * outstanding messages to send again.
+	 */
+	static void assertStallRetry(GrpcProperties properties) {
+		GrpcProperties.Streaming streaming = properties.getStreaming();
+		Assert.isTrue(streaming.isReconnect() || streaming.getIdleTimeout() <= 0 ||
+			properties.getOnDeadlineExceeded() != GrpcProperties.DeadlineAction.retry,
+			"'grpc.streaming.reconnect' must be set when 'grpc.streaming.idle-timeout' is set and "
+				+ "'grpc.on-deadline-exceeded' is 'retry'");
+	}
+
+	/**
+	 * Opens a stream to the sidecar, re-opening it if it fails when 'grpc.streaming.reconnect' is set. Requests and
+	 * responses are prefetched and scheduled as configured by 'grpc.streaming'.
+	 */
+	static <Q, R> Flux<R> openStream(GrpcProperties properties, ObjectProvider<MeterRegistry> meterRegistry,
+		int shard, Flux<Q> requests, Function<Flux<Q>, Flux<R>> stream) {
+		GrpcProperties.Streaming streaming = properties.getStreaming();
+		Flux<Q> streamRequests = flowControl(requests, streaming.getRequestPrefetch(), streaming.getRequestLowTide(),
+			streaming.getRequestScheduler());
+		return flowControl(openStream(properties, meterRegistry, shard, streamRequests, stream, streaming),
+			streaming.getResponsePrefetch(), streaming.getResponseLowTide(), streaming.getResponseScheduler());
+	}
+
+	private static <Q, R> Flux<R> openStream(GrpcProperties properties, ObjectProvider<MeterRegistry> meterRegistry,
+		int shard, Flux<Q> requests, Function<Flux<Q>, Flux<R>> stream, GrpcProperties.Streaming streaming) {
+		if (!streaming.isReconnect()) {
+			return withIdleTimeout(properties, requests, stream);
+		}
+
+		ReconnectingStream<Q> reconnectingStream = new ReconnectingStream<>(requests, streaming.getReplayCapacity(),
+			Duration.ofMillis(streaming.getReconnectBackoff()), Duration.ofMillis(streaming.getMaxReconnectBackoff()),
+			properties.getOnDeadlineExceeded(), properties.getDeadlineRetries());
+		meterRegistry.ifAvailable(registry -> reconnectingStream.bindTo(registry,
+			Tags.of("stream", String.valueOf(shard))));
+		StreamIdleMonitor idleMonitor = streaming.getIdleTimeout() > 0 ?
+			new StreamIdleMonitor(Duration.ofMillis(streaming.getIdleTimeout())) : StreamIdleMonitor.NONE;
+		return reconnectingStream.connect(
+			streamRequests -> idleMonitor.responses(stream.apply(idleMonitor.requests(streamRequests))));
+	}
+
+	/**
+	 * Limits the demand on a stream's requests or responses to 'prefetch' items, replenished after 'lowTide' are
+	 * consumed, and moves them to the given scheduler. Without a prefetch, the scheduler uses Reactor's default
+	 * queue size.
+	 */
+	static <T> Flux<T> flowControl(Flux<T> flux, int prefetch, int lowTide,
+		GrpcProperties.Streaming.SchedulerType schedulerType) {
+		if (prefetch > 0) {
+			flux = lowTide > 0 ? flux.limitRate(prefetch, lowTide) : flux.limitRate(prefetch);
+		}
+		Scheduler scheduler;
+		switch (schedulerType) {
+		case single:
+			scheduler = Schedulers.single();
+			break;
+		case parallel:
+			scheduler = Schedulers.parallel();
+			break;
+		case elastic:
+			scheduler = Schedulers.elastic();
+			break;
+		default:
+			return flux;
+		}
+		return flux.publishOn(scheduler, prefetch > 0 ? prefetch : Queues.SMALL_BUFFER_SIZE);
+	}
+
+	/**
+	 * Applies 'grpc.streaming.idle-timeout' to a stream without 'grpc.streaming.reconnect'. Nothing keeps the
+	 * outstanding messages to send again, so a stalled stream is re-opened without them, logging the number lost as
+	 * a warning for 'drop' and as an error otherwise. The stream is re-opened for 'error' too, so that a stall does
+	 * not terminate the binding. See {@link #assertStallRetry(GrpcProperties)} for 'retry'.
+	 */
+	static <Q, R> Flux<R> withIdleTimeout(GrpcProperties properties, Flux<Q> requests,
+		Function<Flux<Q>, Flux<R>> stream) {
+		long idleTimeout = properties.getStreaming().getIdleTimeout();
+		if (idleTimeout <= 0) {
+			return stream.apply(requests);
+		}
+
+		Flux<Q> streamRequests = ReconnectingStream.resubscribable(requests);
+		StreamIdleMonitor idleMonitor = new StreamIdleMonitor(Duration.ofMillis(idleTimeout));
+		boolean drop = properties.getOnDeadlineExceeded() == GrpcProperties.DeadlineAction.drop;
+		return Flux.defer(() -> idleMonitor.responses(stream.apply(idleMonitor.requests(streamRequests))))
+			.doOnError(TimeoutException.class, e -> {
+				String message = String.format("Stream stalled with %d outstanding messages. Dropping them and "
+					+ "re-opening the stream.", idleMonitor.getOutstanding());
+				if (drop) {
+					logger.warn(message);
+				}
+				else {
+					logger.error(message);
+				}
+			})
+			.retry(TimeoutException.class::isInstance);
+	}
+
+	/**
+	 * Reports the status the sidecar's ping returns, 'UP' or e.g. 'OUT_OF_SERVICE' while it drains. 'alive', which
+	 * earlier sidecars return, is reported as 'UP'.
+	 */
 	@Bean
 	public HealthIndicator sideCarHealthIndicator(final ProcessorGrpc.ProcessorBlockingStub pingStub) {
 		return () -> {
 			try {
 				ProcessorProtos.Status status = pingStub.ping(Empty.getDefaultInstance());
-				return Health.status(status.getMessage()).build();
+				return "alive".equals(status.getMessage()) ? Health.up().build() :
+					Health.status(status.getMessage()).build();
 			}
 			catch (Exception e) {
 				return Health.down().build();
@@ -209,4 +869,23 @@ public class GrpcProcessorConfiguration {
 
 		};
 	}
+
+	static class OnSidecarAddressCondition extends AnyNestedCondition {
+
+		OnSidecarAddressCondition() {
+			super(ConfigurationPhase.REGISTER_BEAN);
+		}
+
+		@ConditionalOnProperty(name = "grpc.host")
+		static class HostCondition {
+		}
+
+		@ConditionalOnProperty(name = "grpc.pool.addresses")
+		static class PoolAddressesCondition {
+		}
+
+		@ConditionalOnProperty(name = "grpc.address")
+		static class AddressCondition {
+		}
+	}
 }
@@ -16,8 +16,12 @@
 
 package org.springframework.cloud.stream.app.grpc.processor;
 
+import io.grpc.Status;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author David Turanski
  **/
@@ -25,7 +29,9 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "grpc")
 public class GrpcProperties {
 
-	public enum Stub {async, blocking,streaming,riff}
+	public enum Stub {async, blocking,streaming,riff,batch,chunked}
+
+	public enum DeadlineAction {error, retry, drop}
 	/**
 	 * The gRPC host name.
 	 */
@@ -34,6 +40,11 @@ public class GrpcProperties {
 	 * The gRPC server port.
 	 */
 	private int port;
+	/**
+	 * The sidecar address as 'host:port', or 'unix://' followed by a Unix domain socket path for a co-located sidecar,
+	 * e.g. 'unix:///tmp/sidecar.sock'. Overrides 'grpc.host' and 'grpc.port'.
+	 */
+	private String address;
 	/**
 	 * Flag to send messages in plain text. SSL configuration required otherwise.
 	 */
@@ -54,11 +65,74 @@ public class GrpcProperties {
 	 */
 	private boolean includeHeaders;
 
+	/**
+	 * Flag to share payload byte arrays between Spring and protobuf messages instead of copying them. Payloads must
+	 * not be modified after they are sent.
+	 */
+	private boolean zeroCopy;
+
 	/**
 	 * RPC communications style (default 'blocking').
 	 */
 	private Stub stub = Stub.blocking;
 
+	/**
+	 * The deadline in milliseconds for each call to the remote process, 0 for none. Does not apply to streaming
+	 * calls, see 'grpc.streaming.idle-timeout'.
+	 */
+	private long deadline;
+
+	/**
+	 * What to do when a call exceeds its deadline: send the failure to the error channel ('error'), retry the call
+	 * ('retry') or drop the message ('drop'). For streaming stubs, a stalled stream is always re-opened, and 'retry'
+	 * requires 'grpc.streaming.reconnect'.
+	 */
+	private DeadlineAction onDeadlineExceeded = DeadlineAction.error;
+
+	/**
+	 * The number of times a call, or stream, is retried when 'grpc.on-deadline-exceeded' is 'retry'.
+	 */
+	private int deadlineRetries = 1;
+
+	/**
+	 * The maximum payload size in bytes of each chunk when 'grpc.stub' is 'chunked'.
+	 */
+	private int chunkSize = 64 * 1024;
+
+	/**
+	 * The maximum payload size in bytes of a response reassembled from chunks when 'grpc.stub' is 'chunked'. The
+	 * payload is held in memory, so larger responses fail before it is allocated.
+	 */
+	private int maxChunkedSize = 64 * 1024 * 1024;
+
+	private final Pool pool = new Pool();
+
+	private final Batch batch = new Batch();
+
+	private final Async async = new Async();
+
+	private final Headers headers = new Headers();
+
+	private final Compression compression = new Compression();
+
+	private final Metrics metrics = new Metrics();
+
+	private final Executor executor = new Executor();
+
+	private final Netty netty = new Netty();
+
+	private final Limiter limiter = new Limiter();
+
+	private final Streaming streaming = new Streaming();
+
+	private final Riff riff = new Riff();
+
+	private final Hedging hedging = new Hedging();
+
+	private final Retry retry = new Retry();
+
+	private final CircuitBreaker circuitBreaker = new CircuitBreaker();
+
 	public int getMaxMessageSize() {
 		return maxMessageSize;
 	}
@@ -75,6 +149,14 @@ public class GrpcProperties {
 		this.host = host;
 	}
 
+	public String getAddress() {
+		return address;
+	}
+
+	public void setAddress(String address) {
+		this.address = address;
+	}
+
 	public int getPort() {
 		return port;
 	}
@@ -107,6 +189,14 @@ public class GrpcProperties {
 		this.includeHeaders = includeHeaders;
 	}
 
+	public boolean isZeroCopy() {
+		return zeroCopy;
+	}
+
+	public void setZeroCopy(boolean zeroCopy) {
+		this.zeroCopy = zeroCopy;
+	}
+
 	public Stub getStub() {
 		return stub;
 	}
@@ -114,4 +204,940 @@ public class GrpcProperties {
 	public void setStub(Stub stub) {
 		this.stub = stub;
 	}
+
+	public long getDeadline() {
+		return deadline;
+	}
+
+	public void setDeadline(long deadline) {
+		this.deadline = deadline;
+	}
+
+	public DeadlineAction getOnDeadlineExceeded() {
+		return onDeadlineExceeded;
+	}
+
+	public void setOnDeadlineExceeded(DeadlineAction onDeadlineExceeded) {
+		this.onDeadlineExceeded = onDeadlineExceeded;
+	}
+
+	public int getDeadlineRetries() {
+		return deadlineRetries;
+	}
+
+	public void setDeadlineRetries(int deadlineRetries) {
+		this.deadlineRetries = deadlineRetries;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	public int getMaxChunkedSize() {
+		return maxChunkedSize;
+	}
+
+	public void setMaxChunkedSize(int maxChunkedSize) {
+		this.maxChunkedSize = maxChunkedSize;
+	}
+
+	public Pool getPool() {
+		return pool;
+	}
+
+	public Batch getBatch() {
+		return batch;
+	}
+
+	public Async getAsync() {
+		return async;
+	}
+
+	public Headers getHeaders() {
+		return headers;
+	}
+
+	public Compression getCompression() {
+		return compression;
+	}
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	public Netty getNetty() {
+		return netty;
+	}
+
+	public Limiter getLimiter() {
+		return limiter;
+	}
+
+	public Streaming getStreaming() {
+		return streaming;
+	}
+
+	public Riff getRiff() {
+		return riff;
+	}
+
+	public Hedging getHedging() {
+		return hedging;
+	}
+
+	public Retry getRetry() {
+		return retry;
+	}
+
+	public CircuitBreaker getCircuitBreaker() {
+		return circuitBreaker;
+	}
+
+	public static class Pool {
+
+		/**
+		 * The number of channels (connections) to open to each sidecar address.
+		 */
+		private int size = 1;
+
+		/**
+		 * Sidecar addresses as 'host:port' or 'unix:///path'. Defaults to 'grpc.address'.
+		 */
+		private List<String> addresses = new ArrayList<>();
+
+		/**
+		 * The policy used to select a channel from the pool for each call.
+		 */
+		private ChannelPool.Policy policy = ChannelPool.Policy.round_robin;
+
+		public int getSize() {
+			return size;
+		}
+
+		public void setSize(int size) {
+			this.size = size;
+		}
+
+		public List<String> getAddresses() {
+			return addresses;
+		}
+
+		public void setAddresses(List<String> addresses) {
+			this.addresses = addresses;
+		}
+
+		public ChannelPool.Policy getPolicy() {
+			return policy;
+		}
+
+		public void setPolicy(ChannelPool.Policy policy) {
+			this.policy = policy;
+		}
+	}
+
+	public static class Batch {
+
+		/**
+		 * The maximum number of messages sent in a single call when 'grpc.stub' is 'batch', or in a single frame
+		 * when 'grpc.riff.bulk' is set.
+		 */
+		private int size = 100;
+
+		/**
+		 * The maximum size (bytes) of a batch, or of a frame when 'grpc.riff.bulk' is set, 0 for no limit.
+		 */
+		private long maxBytes = 1024 * 1024;
+
+		/**
+		 * The maximum time in milliseconds a message waits for its batch or frame to fill before it is sent.
+		 */
+		private long lingerTime = 10;
+
+		public int getSize() {
+			return size;
+		}
+
+		public void setSize(int size) {
+			this.size = size;
+		}
+
+		public long getMaxBytes() {
+			return maxBytes;
+		}
+
+		public void setMaxBytes(long maxBytes) {
+			this.maxBytes = maxBytes;
+		}
+
+		public long getLingerTime() {
+			return lingerTime;
+		}
+
+		public void setLingerTime(long lingerTime) {
+			this.lingerTime = lingerTime;
+		}
+	}
+
+	public static class Async {
+
+		/**
+		 * The maximum number of calls in flight when 'grpc.stub' is 'async', 0 for no limit. The binder consumer is
+		 * blocked while the limit is reached. Must be greater than 0 when 'grpc.async.ordered' is true.
+		 */
+		private int maxInFlight = 256;
+
+		/**
+		 * Flag to send results to the output in input order when 'grpc.stub' is 'async'. Results are buffered
+		 * until earlier results have been sent, at most 'grpc.async.max-in-flight' of them.
+		 */
+		private boolean ordered;
+
+		/**
+		 * The header used to order results per key (e.g. the partition key) when 'grpc.async.ordered' is true.
+		 * Results are ordered across all messages if not set.
+		 */
+		private String orderKeyHeader;
+
+		public int getMaxInFlight() {
+			return maxInFlight;
+		}
+
+		public void setMaxInFlight(int maxInFlight) {
+			this.maxInFlight = maxInFlight;
+		}
+
+		public boolean isOrdered() {
+			return ordered;
+		}
+
+		public void setOrdered(boolean ordered) {
+			this.ordered = ordered;
+		}
+
+		public String getOrderKeyHeader() {
+			return orderKeyHeader;
+		}
+
+		public void setOrderKeyHeader(String orderKeyHeader) {
+			this.orderKeyHeader = orderKeyHeader;
+		}
+	}
+
+	public static class Headers {
+
+		/**
+		 * Patterns of header names exchanged with the remote process, e.g. 'contentType,app_*'. Headers are sent,
+		 * even if 'grpc.include-headers' is false, if this is set.
+		 */
+		private String[] include;
+
+		/**
+		 * Patterns of header names not exchanged with the remote process, e.g. 'kafka_*'.
+		 */
+		private String[] exclude;
+
+		public String[] getInclude() {
+			return include;
+		}
+
+		public void setInclude(String[] include) {
+			this.include = include;
+		}
+
+		public String[] getExclude() {
+			return exclude;
+		}
+
+		public void setExclude(String[] exclude) {
+			this.exclude = exclude;
+		}
+	}
+
+	public static class Compression {
+
+		public enum Codec {none, gzip, snappy}
+
+		/**
+		 * Codec used to compress messages sent to the remote process. The remote process must support it.
+		 */
+		private Codec codec = Codec.none;
+
+		/**
+		 * Minimum serialized message size (bytes) to compress. Smaller messages are sent uncompressed.
+		 */
+		private int minSize = 1024;
+
+		public Codec getCodec() {
+			return codec;
+		}
+
+		public void setCodec(Codec codec) {
+			this.codec = codec;
+		}
+
+		public int getMinSize() {
+			return minSize;
+		}
+
+		public void setMinSize(int minSize) {
+			this.minSize = minSize;
+		}
+	}
+
+	public static class Metrics {
+
+		/**
+		 * Flag to publish call, message size and conversion metrics for calls to the remote process, to the global
+		 * registry if the application has none.
+		 */
+		private boolean enabled = true;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+	}
+
+	public static class Executor {
+
+		public enum Type {direct, fixed, fork_join, virtual}
+
+		/**
+		 * The executor running call callbacks, including sends to the output channel. 'direct' runs them on the
+		 * transport threads, so a slow output stalls network I/O. 'virtual' requires a JVM supporting virtual
+		 * threads and falls back to 'fixed' otherwise.
+		 */
+		private Type type = Type.direct;
+
+		/**
+		 * The number of threads for the 'fixed' and 'fork_join' executors, 0 for the number of processors.
+		 */
+		private int threads;
+
+		/**
+		 * The maximum number of callbacks queued by the 'fixed' executor, 0 for no limit. Callbacks run on the
+		 * transport thread when the queue is full.
+		 */
+		private int queueCapacity = 10000;
+
+		public Type getType() {
+			return type;
+		}
+
+		public void setType(Type type) {
+			this.type = type;
+		}
+
+		public int getThreads() {
+			return threads;
+		}
+
+		public void setThreads(int threads) {
+			this.threads = threads;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+	}
+
+	public static class Netty {
+
+		/**
+		 * Flag to use the native epoll transport, on Linux. NIO is used if it is not available.
+		 */
+		private boolean nativeTransport;
+
+		/**
+		 * The number of event loop threads shared by the channels, 0 for the gRPC default.
+		 */
+		private int eventLoopThreads;
+
+		/**
+		 * The initial HTTP/2 flow control window (bytes), 0 for the gRPC default (1MB). A window larger than the
+		 * message size avoids waiting for window updates when sending large messages.
+		 */
+		private int flowControlWindow;
+
+		/**
+		 * The time in seconds without reads after which a keepalive ping is sent, 0 to disable keepalive.
+		 */
+		private long keepAliveTime;
+
+		/**
+		 * The time in seconds to wait for a keepalive ping response before closing the connection.
+		 */
+		private long keepAliveTimeout = 20;
+
+		/**
+		 * Flag to send keepalive pings when there are no calls in progress.
+		 */
+		private boolean keepAliveWithoutCalls;
+
+		public boolean isNativeTransport() {
+			return nativeTransport;
+		}
+
+		public void setNativeTransport(boolean nativeTransport) {
+			this.nativeTransport = nativeTransport;
+		}
+
+		public int getEventLoopThreads() {
+			return eventLoopThreads;
+		}
+
+		public void setEventLoopThreads(int eventLoopThreads) {
+			this.eventLoopThreads = eventLoopThreads;
+		}
+
+		public int getFlowControlWindow() {
+			return flowControlWindow;
+		}
+
+		public void setFlowControlWindow(int flowControlWindow) {
+			this.flowControlWindow = flowControlWindow;
+		}
+
+		public long getKeepAliveTime() {
+			return keepAliveTime;
+		}
+
+		public void setKeepAliveTime(long keepAliveTime) {
+			this.keepAliveTime = keepAliveTime;
+		}
+
+		public long getKeepAliveTimeout() {
+			return keepAliveTimeout;
+		}
+
+		public void setKeepAliveTimeout(long keepAliveTimeout) {
+			this.keepAliveTimeout = keepAliveTimeout;
+		}
+
+		public boolean isKeepAliveWithoutCalls() {
+			return keepAliveWithoutCalls;
+		}
+
+		public void setKeepAliveWithoutCalls(boolean keepAliveWithoutCalls) {
+			this.keepAliveWithoutCalls = keepAliveWithoutCalls;
+		}
+	}
+
+	public static class Limiter {
+
+		/**
+		 * Flag to adapt the number of unary calls in flight to the sidecar to its latency. The binder consumer is
+		 * blocked while the limit is reached; async retries fail with RESOURCE_EXHAUSTED instead.
+		 */
+		private boolean enabled;
+
+		/**
+		 * The initial concurrency limit.
+		 */
+		private int initialLimit = 20;
+
+		/**
+		 * The minimum concurrency limit.
+		 */
+		private int minLimit = 1;
+
+		/**
+		 * The maximum concurrency limit.
+		 */
+		private int maxLimit = 1000;
+
+		/**
+		 * The weight (0-1] of each new limit estimate. Higher values adapt faster.
+		 */
+		private double smoothing = 0.2;
+
+		/**
+		 * How much call latency may exceed its long term average before the limit shrinks.
+		 */
+		private double rttTolerance = 1.5;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getInitialLimit() {
+			return initialLimit;
+		}
+
+		public void setInitialLimit(int initialLimit) {
+			this.initialLimit = initialLimit;
+		}
+
+		public int getMinLimit() {
+			return minLimit;
+		}
+
+		public void setMinLimit(int minLimit) {
+			this.minLimit = minLimit;
+		}
+
+		public int getMaxLimit() {
+			return maxLimit;
+		}
+
+		public void setMaxLimit(int maxLimit) {
+			this.maxLimit = maxLimit;
+		}
+
+		public double getSmoothing() {
+			return smoothing;
+		}
+
+		public void setSmoothing(double smoothing) {
+			this.smoothing = smoothing;
+		}
+
+		public double getRttTolerance() {
+			return rttTolerance;
+		}
+
+		public void setRttTolerance(double rttTolerance) {
+			this.rttTolerance = rttTolerance;
+		}
+	}
+
+	public static class Streaming {
+
+		public enum SchedulerType {immediate, single, parallel, elastic}
+
+		/**
+		 * The time in milliseconds to wait for a response while requests are outstanding before the stream is
+		 * considered stalled and handled as 'grpc.on-deadline-exceeded', 0 for no limit.
+		 */
+		private long idleTimeout;
+
+		/**
+		 * Flag to re-open a stream that fails because the sidecar is unavailable, sending unacknowledged messages
+		 * again. Assumes one response per message.
+		 */
+		private boolean reconnect;
+
+		/**
+		 * The time in milliseconds to wait before re-opening a failed stream, doubling for consecutive failures.
+		 */
+		private long reconnectBackoff = 100;
+
+		/**
+		 * The maximum time in milliseconds to wait before re-opening a failed stream.
+		 */
+		private long maxReconnectBackoff = 10000;
+
+		/**
+		 * The maximum number of unacknowledged messages kept to send again on a re-opened stream.
+		 */
+		private int replayCapacity = 1000;
+
+		/**
+		 * The number of concurrent streams to the sidecar. Open more than one if a single stream limits throughput.
+		 */
+		private int parallelism = 1;
+
+		/**
+		 * The header holding the partition key (e.g. 'partitionKey'), when 'grpc.streaming.parallelism' is more than
+		 * 1. Messages with the same key are sent on the same stream, keeping their order. Messages without it are
+		 * sent on each stream in turn.
+		 */
+		private String partitionKeyHeader;
+
+		/**
+		 * The maximum number of messages requested from the binder at a time for each stream, 0 to let the stub
+		 * request them as the stream is ready.
+		 */
+		private int requestPrefetch;
+
+		/**
+		 * The number of messages to send before requesting more from the binder, when
+		 * 'grpc.streaming.request-prefetch' is set, 0 for 75% of the prefetch.
+		 */
+		private int requestLowTide;
+
+		/**
+		 * The scheduler sending messages on each stream. 'immediate' sends them on the binder's thread.
+		 */
+		private SchedulerType requestScheduler = SchedulerType.immediate;
+
+		/**
+		 * The maximum number of responses requested from each stream at a time, 0 for no limit.
+		 */
+		private int responsePrefetch;
+
+		/**
+		 * The number of responses to handle before requesting more, when 'grpc.streaming.response-prefetch' is set,
+		 * 0 for 75% of the prefetch.
+		 */
+		private int responseLowTide;
+
+		/**
+		 * The scheduler sending responses to the binder. 'immediate' sends them on the gRPC executor's thread.
+		 */
+		private SchedulerType responseScheduler = SchedulerType.immediate;
+
+		public long getIdleTimeout() {
+			return idleTimeout;
+		}
+
+		public void setIdleTimeout(long idleTimeout) {
+			this.idleTimeout = idleTimeout;
+		}
+
+		public boolean isReconnect() {
+			return reconnect;
+		}
+
+		public void setReconnect(boolean reconnect) {
+			this.reconnect = reconnect;
+		}
+
+		public long getReconnectBackoff() {
+			return reconnectBackoff;
+		}
+
+		public void setReconnectBackoff(long reconnectBackoff) {
+			this.reconnectBackoff = reconnectBackoff;
+		}
+
+		public long getMaxReconnectBackoff() {
+			return maxReconnectBackoff;
+		}
+
+		public void setMaxReconnectBackoff(long maxReconnectBackoff) {
+			this.maxReconnectBackoff = maxReconnectBackoff;
+		}
+
+		public int getReplayCapacity() {
+			return replayCapacity;
+		}
+
+		public void setReplayCapacity(int replayCapacity) {
+			this.replayCapacity = replayCapacity;
+		}
+
+		public int getParallelism() {
+			return parallelism;
+		}
+
+		public void setParallelism(int parallelism) {
+			this.parallelism = parallelism;
+		}
+
+		public String getPartitionKeyHeader() {
+			return partitionKeyHeader;
+		}
+
+		public void setPartitionKeyHeader(String partitionKeyHeader) {
+			this.partitionKeyHeader = partitionKeyHeader;
+		}
+
+		public int getRequestPrefetch() {
+			return requestPrefetch;
+		}
+
+		public void setRequestPrefetch(int requestPrefetch) {
+			this.requestPrefetch = requestPrefetch;
+		}
+
+		public int getRequestLowTide() {
+			return requestLowTide;
+		}
+
+		public void setRequestLowTide(int requestLowTide) {
+			this.requestLowTide = requestLowTide;
+		}
+
+		public SchedulerType getRequestScheduler() {
+			return requestScheduler;
+		}
+
+		public void setRequestScheduler(SchedulerType requestScheduler) {
+			this.requestScheduler = requestScheduler;
+		}
+
+		public int getResponsePrefetch() {
+			return responsePrefetch;
+		}
+
+		public void setResponsePrefetch(int responsePrefetch) {
+			this.responsePrefetch = responsePrefetch;
+		}
+
+		public int getResponseLowTide() {
+			return responseLowTide;
+		}
+
+		public void setResponseLowTide(int responseLowTide) {
+			this.responseLowTide = responseLowTide;
+		}
+
+		public SchedulerType getResponseScheduler() {
+			return responseScheduler;
+		}
+
+		public void setResponseScheduler(SchedulerType responseScheduler) {
+			this.responseScheduler = responseScheduler;
+		}
+	}
+
+	public static class Riff {
+
+		/**
+		 * Flag to send messages to the function in frames of up to 'grpc.batch.size' messages and 'grpc.batch.max-bytes',
+		 * waiting at most 'grpc.batch.linger-time' for a frame to fill, when 'grpc.stub' is 'riff'. The function must
+		 * implement 'CallBatch'.
+		 */
+		private boolean bulk;
+
+		public boolean isBulk() {
+			return bulk;
+		}
+
+		public void setBulk(boolean bulk) {
+			this.bulk = bulk;
+		}
+	}
+
+	public static class Hedging {
+
+		/**
+		 * Flag to send a second request if a call takes longer than the hedging delay, using the first response, when
+		 * 'grpc.stub' is 'blocking' or 'async'.
+		 */
+		private boolean enabled;
+
+		/**
+		 * The time in milliseconds to wait for a response before hedging, or before enough calls have been made to
+		 * use 'grpc.hedging.percentile'.
+		 */
+		private long delay = 50;
+
+		/**
+		 * If set, hedge calls taking longer than this percentile (e.g. 95) of recent call latency, instead of a fixed
+		 * delay.
+		 */
+		private double percentile;
+
+		/**
+		 * The maximum number of hedged requests per call.
+		 */
+		private int maxHedges = 1;
+
+		/**
+		 * The maximum ratio of hedged requests to calls, e.g. 0.1 for 10%.
+		 */
+		private double budget = 0.1;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public long getDelay() {
+			return delay;
+		}
+
+		public void setDelay(long delay) {
+			this.delay = delay;
+		}
+
+		public double getPercentile() {
+			return percentile;
+		}
+
+		public void setPercentile(double percentile) {
+			this.percentile = percentile;
+		}
+
+		public int getMaxHedges() {
+			return maxHedges;
+		}
+
+		public void setMaxHedges(int maxHedges) {
+			this.maxHedges = maxHedges;
+		}
+
+		public double getBudget() {
+			return budget;
+		}
+
+		public void setBudget(double budget) {
+			this.budget = budget;
+		}
+	}
+
+	public static class Retry {
+
+		/**
+		 * Flag to retry failed calls with a retryable status code. Calls exceeding their deadline are retried as
+		 * configured by 'grpc.on-deadline-exceeded', with this backoff and budget.
+		 */
+		private boolean enabled;
+
+		/**
+		 * The maximum number of attempts for each call, including the first.
+		 */
+		private int maxAttempts = 3;
+
+		/**
+		 * The time in milliseconds to wait before the first retry.
+		 */
+		private long initialBackoff = 100;
+
+		/**
+		 * The maximum time in milliseconds to wait before a retry.
+		 */
+		private long maxBackoff = 5000;
+
+		/**
+		 * The factor by which the backoff grows for each retry.
+		 */
+		private double multiplier = 2.0;
+
+		/**
+		 * The status codes of failures to retry.
+		 */
+		private Status.Code[] codes = { Status.Code.UNAVAILABLE };
+
+		/**
+		 * The maximum ratio of retries to successful calls, e.g. 0.1 for 10%, after an initial allowance of 10 retries.
+		 */
+		private double budget = 0.1;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getMaxAttempts() {
+			return maxAttempts;
+		}
+
+		public void setMaxAttempts(int maxAttempts) {
+			this.maxAttempts = maxAttempts;
+		}
+
+		public long getInitialBackoff() {
+			return initialBackoff;
+		}
+
+		public void setInitialBackoff(long initialBackoff) {
+			this.initialBackoff = initialBackoff;
+		}
+
+		public long getMaxBackoff() {
+			return maxBackoff;
+		}
+
+		public void setMaxBackoff(long maxBackoff) {
+			this.maxBackoff = maxBackoff;
+		}
+
+		public double getMultiplier() {
+			return multiplier;
+		}
+
+		public void setMultiplier(double multiplier) {
+			this.multiplier = multiplier;
+		}
+
+		public Status.Code[] getCodes() {
+			return codes;
+		}
+
+		public void setCodes(Status.Code[] codes) {
+			this.codes = codes;
+		}
+
+		public double getBudget() {
+			return budget;
+		}
+
+		public void setBudget(double budget) {
+			this.budget = budget;
+		}
+	}
+
+	public static class CircuitBreaker {
+
+		/**
+		 * Flag to stop calling the sidecar, failing calls immediately, after consecutive failures.
+		 */
+		private boolean enabled;
+
+		/**
+		 * The number of consecutive failed calls opening the circuit.
+		 */
+		private int failureThreshold = 5;
+
+		/**
+		 * The time in milliseconds calls fail immediately, once the circuit is open, before a trial call is made. A
+		 * trial call not completed within this time is followed by another.
+		 */
+		private long openDuration = 10000;
+
+		/**
+		 * The status codes of failures counted towards 'grpc.circuit-breaker.failure-threshold'.
+		 */
+		private Status.Code[] failureCodes = { Status.Code.UNAVAILABLE, Status.Code.DEADLINE_EXCEEDED };
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getFailureThreshold() {
+			return failureThreshold;
+		}
+
+		public void setFailureThreshold(int failureThreshold) {
+			this.failureThreshold = failureThreshold;
+		}
+
+		public long getOpenDuration() {
+			return openDuration;
+		}
+
+		public void setOpenDuration(long openDuration) {
+			this.openDuration = openDuration;
+		}
+
+		public Status.Code[] getFailureCodes() {
+			return failureCodes;
+		}
+
+		public void setFailureCodes(Status.Code[] failureCodes) {
+			this.failureCodes = failureCodes;
+		}
+	}
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Bounds the number of calls in flight to the sidecar. {@link #acquire()} blocks the calling (binder consumer) thread
+ * while the window is full, which applies back pressure to the binder.
+ *
+ * @author David Turanski
+ **/
+public class InFlightWindow {
+
+	private final int limit;
+
+	private final Semaphore permits;
+
+	/**
+	 * @param limit the maximum number of calls in flight, 0 for no limit.
+	 */
+	public InFlightWindow(int limit) {
+		this.limit = limit > 0 ? limit : Integer.MAX_VALUE;
+		this.permits = new Semaphore(this.limit);
+	}
+
+	public void acquire() throws InterruptedException {
+		permits.acquire();
+	}
+
+	public void release() {
+		permits.release();
+	}
+
+	public int getLimit() {
+		return limit;
+	}
+
+	public int getInFlight() {
+		return limit - permits.availablePermits();
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Accumulates messages and hands them to a consumer as a single batch once the batch reaches a maximum message count
+ * or size, or the first message in the batch has waited for the linger time. Batches are flushed one at a time, in
+ * the order the messages were added, but outside the lock guarding the batch being filled, so adding a message only
+ * waits for a flush if it completes a batch.
+ *
+ * @param <T> the message type.
+ * @author David Turanski
+ **/
+public class MessageBatcher<T> {
+
+	private static Log logger = LogFactory.getLog(MessageBatcher.class);
+
+	private final int maxCount;
+
+	private final long maxBytes;
+
+	private final long lingerTime;
+
+	private final ToLongFunction<T> size;
+
+	private final Consumer<List<T>> flusher;
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "grpc-batch-linger");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final Object flushLock = new Object();
+
+	private List<T> batch;
+
+	private long bytes;
+
+	private ScheduledFuture<?> lingerTask;
+
+	/**
+	 * The number of batches taken for flushing, guarded by this.
+	 */
+	private long taken;
+
+	/**
+	 * The number of batches flushed, guarded by {@link #flushLock}.
+	 */
+	private long flushed;
+
+	/**
+	 * @param maxCount the maximum number of messages in a batch.
+	 * @param maxBytes the maximum size of a batch, or 0 for no limit.
+	 * @param lingerTime the maximum time in milliseconds a message waits before its batch is flushed.
+	 * @param size the size of a message, e.g. its serialized size.
+	 * @param flusher receives each batch.
+	 */
+	public MessageBatcher(int maxCount, long maxBytes, long lingerTime, ToLongFunction<T> size,
+		Consumer<List<T>> flusher) {
+		Assert.isTrue(maxCount > 0, "'maxCount' must be greater than 0.");
+		Assert.notNull(size, "'size' cannot be null.");
+		Assert.notNull(flusher, "'flusher' cannot be null.");
+		this.maxCount = maxCount;
+		this.maxBytes = maxBytes;
+		this.lingerTime = lingerTime;
+		this.size = size;
+		this.flusher = flusher;
+		this.batch = new ArrayList<>(maxCount);
+	}
+
+	public void add(T message) {
+		long messageSize = size.applyAsLong(message);
+		Batch<T> previous = null;
+		Batch<T> full = null;
+		synchronized (this) {
+			if (maxBytes > 0 && !batch.isEmpty() && bytes + messageSize > maxBytes) {
+				previous = take();
+			}
+
+			batch.add(message);
+			bytes += messageSize;
+
+			if (batch.size() >= maxCount || (maxBytes > 0 && bytes >= maxBytes) || lingerTime <= 0) {
+				full = take();
+			}
+			else if (lingerTask == null) {
+				lingerTask = scheduler.schedule(this::flush, lingerTime, TimeUnit.MILLISECONDS);
+			}
+		}
+		flush(previous);
+		flush(full);
+	}
+
+	/**
+	 * Flush any pending messages.
+	 */
+	public void flush() {
+		Batch<T> pending;
+		synchronized (this) {
+			pending = take();
+		}
+		flush(pending);
+	}
+
+	/**
+	 * Flush any pending messages and release the linger timer.
+	 */
+	public void shutdown() {
+		try {
+			flush();
+		}
+		finally {
+			scheduler.shutdown();
+		}
+	}
+
+	/**
+	 * Take the current batch for flushing, guarded by this.
+	 */
+	private Batch<T> take() {
+		if (lingerTask != null) {
+			lingerTask.cancel(false);
+			lingerTask = null;
+		}
+		if (batch.isEmpty()) {
+			return null;
+		}
+
+		Batch<T> taken = new Batch<>(batch, this.taken++);
+		batch = new ArrayList<>(maxCount);
+		bytes = 0;
+		return taken;
+	}
+
+	/**
+	 * Hand a batch to the flusher once the batches taken before it have been flushed.
+	 */
+	private void flush(Batch<T> batch) {
+		if (batch == null) {
+			return;
+		}
+		boolean interrupted = false;
+		synchronized (flushLock) {
+			while (flushed != batch.sequence) {
+				try {
+					flushLock.wait();
+				}
+				catch (InterruptedException e) {
+					// Batches must be flushed in turn, so keep waiting.
+					interrupted = true;
+				}
+			}
+			try {
+				flusher.accept(batch.messages);
+			}
+			catch (RuntimeException e) {
+				logger.error("Failed to process message batch", e);
+			}
+			finally {
+				flushed++;
+				flushLock.notifyAll();
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static class Batch<T> {
+
+		private final List<T> messages;
+
+		private final long sequence;
+
+		Batch(List<T> messages, long sequence) {
+			this.messages = messages;
+			this.sequence = sequence;
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes call latency by method and status, message sizes and active calls for calls to the sidecar. Meters are
+ * created once per method, so the cost per call is a few counter updates.
+ *
+ * <ul>
+ * <li>{@code grpc.processor.calls} - timer, tagged 'stub', 'method' and 'status'.</li>
+ * <li>{@code grpc.processor.message.size} - distribution summary (bytes), tagged 'stub', 'method' and 'direction'
+ * ('sent' or 'received').</li>
+ * <li>{@code grpc.processor.calls.active} - gauge, tagged 'stub'.</li>
+ * </ul>
+ *
+ * @author David Turanski
+ **/
+public class MetricsClientInterceptor implements ClientInterceptor {
+
+	private final MeterRegistry meterRegistry;
+
+	private final String stub;
+
+	private final AtomicInteger activeCalls = new AtomicInteger();
+
+	private final ConcurrentMap<String, MethodMeters> methodMeters = new ConcurrentHashMap<>();
+
+	/**
+	 * @param meterRegistry the registry to publish to.
+	 * @param stub the stub type, used to tag meters.
+	 */
+	public MetricsClientInterceptor(MeterRegistry meterRegistry, String stub) {
+		this.meterRegistry = meterRegistry;
+		this.stub = stub;
+		Gauge.builder("grpc.processor.calls.active", activeCalls, AtomicInteger::get).tag("stub", stub)
+			.description("Calls to the sidecar in progress").register(meterRegistry);
+	}
+
+	@Override
+	public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+		CallOptions callOptions, Channel next) {
+		MethodMeters meters = methodMeters.computeIfAbsent(method.getFullMethodName(), MethodMeters::new);
+
+		return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(next.newCall(method, callOptions)) {
+
+			@Override
+			public void start(Listener<RespT> responseListener, Metadata headers) {
+				final long start = System.nanoTime();
+				// Counted before starting, since the listener may be closed before start returns.
+				activeCalls.incrementAndGet();
+				try {
+					super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(
+						responseListener) {
+
+						@Override
+						public void onMessage(RespT message) {
+							meters.received.record(serializedSize(message));
+							super.onMessage(message);
+						}
+
+						@Override
+						public void onClose(Status status, Metadata trailers) {
+							activeCalls.decrementAndGet();
+							meters.timer(status.getCode()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+							super.onClose(status, trailers);
+						}
+					}, headers);
+				}
+				catch (RuntimeException e) {
+					// The call never started, so onClose will not be called.
+					activeCalls.decrementAndGet();
+					throw e;
+				}
+			}
+
+			@Override
+			public void sendMessage(ReqT message) {
+				meters.sent.record(serializedSize(message));
+				super.sendMessage(message);
+			}
+		};
+	}
+
+	/**
+	 * The serialized size is memoized by protobuf messages, so this is cheap once the message has been serialized.
+	 */
+	private static int serializedSize(Object message) {
+		return message instanceof MessageLite ? ((MessageLite) message).getSerializedSize() : 0;
+	}
+
+	private final class MethodMeters {
+
+		private final String method;
+
+		private final DistributionSummary sent;
+
+		private final DistributionSummary received;
+
+		private final Timer[] timers = new Timer[Status.Code.values().length];
+
+		MethodMeters(String fullMethodName) {
+			this.method = fullMethodName.substring(fullMethodName.lastIndexOf('/') + 1);
+			this.sent = messageSize("sent");
+			this.received = messageSize("received");
+		}
+
+		/**
+		 * Timers are registered on first use. Racing threads get the same timer from the registry.
+		 */
+		Timer timer(Status.Code code) {
+			Timer timer = timers[code.ordinal()];
+			if (timer == null) {
+				timer = Timer.builder("grpc.processor.calls").tag("stub", stub).tag("method", method)
+					.tag("status", code.name()).description("Calls to the sidecar").register(meterRegistry);
+				timers[code.ordinal()] = timer;
+			}
+			return timer;
+		}
+
+		private DistributionSummary messageSize(String direction) {
+			return DistributionSummary.builder("grpc.processor.message.size").baseUnit("bytes").tag("stub", stub)
+				.tag("method", method).tag("direction", direction).description("Messages exchanged with the sidecar")
+				.register(meterRegistry);
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import io.grpc.netty.NettyChannelBuilder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDomainSocketChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.channel.unix.DomainSocketAddress;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates channel builders for TCP or Unix domain socket addresses with the {@link GrpcProperties.Netty} transport
+ * options. Channels share one event loop group, created if the native transport or a number of event loop threads is
+ * configured. Otherwise TCP channels use the gRPC default event loop group.
+ *
+ * @author David Turanski
+ **/
+public class NettyTransport {
+
+	public static final String UNIX_SCHEME = "unix://";
+
+	private static Log logger = LogFactory.getLog(NettyTransport.class);
+
+	private final GrpcProperties.Netty properties;
+
+	private final EventLoopGroup eventLoopGroup;
+
+	private final boolean epoll;
+
+	private EventLoopGroup domainSocketEventLoopGroup;
+
+	public NettyTransport(GrpcProperties.Netty properties) {
+		this.properties = properties;
+		this.epoll = properties.isNativeTransport() && epollAvailable();
+
+		if (epoll) {
+			eventLoopGroup = new EpollEventLoopGroup(properties.getEventLoopThreads(), threadFactory());
+		}
+		else if (properties.getEventLoopThreads() > 0) {
+			eventLoopGroup = new NioEventLoopGroup(properties.getEventLoopThreads(), threadFactory());
+		}
+		else {
+			eventLoopGroup = null;
+		}
+	}
+
+	/**
+	 * @return true if the native epoll transport is used.
+	 */
+	public boolean isEpoll() {
+		return epoll;
+	}
+
+	/**
+	 * @return the shared event loop group, or null if the gRPC default is used.
+	 */
+	public EventLoopGroup getEventLoopGroup() {
+		return eventLoopGroup;
+	}
+
+	/**
+	 * @param address 'host:port' or 'unix://' followed by a Unix domain socket path.
+	 * @return a configured channel builder for the address.
+	 */
+	public NettyChannelBuilder channelBuilder(String address) {
+		if (address.startsWith(UNIX_SCHEME)) {
+			return configure(NettyChannelBuilder.forAddress(
+				new DomainSocketAddress(address.substring(UNIX_SCHEME.length()))))
+				.eventLoopGroup(domainSocketEventLoopGroup())
+				.channelType(EpollDomainSocketChannel.class);
+		}
+
+		int separator = address.lastIndexOf(':');
+		Assert.isTrue(separator > 0,
+			String.format("Invalid sidecar address '%s'. Expected 'host:port' or 'unix:///path'.", address));
+		return configure(NettyChannelBuilder.forAddress(address.substring(0, separator),
+			Integer.parseInt(address.substring(separator + 1))));
+	}
+
+	public NettyChannelBuilder configure(NettyChannelBuilder channelBuilder) {
+		if (eventLoopGroup != null) {
+			channelBuilder.eventLoopGroup(eventLoopGroup)
+				.channelType(epoll ? EpollSocketChannel.class : NioSocketChannel.class);
+		}
+		if (properties.getFlowControlWindow() > 0) {
+			channelBuilder.flowControlWindow(properties.getFlowControlWindow());
+		}
+		if (properties.getKeepAliveTime() > 0) {
+			channelBuilder.keepAliveTime(properties.getKeepAliveTime(), TimeUnit.SECONDS)
+				.keepAliveTimeout(properties.getKeepAliveTimeout(), TimeUnit.SECONDS)
+				.keepAliveWithoutCalls(properties.isKeepAliveWithoutCalls());
+		}
+		return channelBuilder;
+	}
+
+	/**
+	 * Shut down the event loop groups. Call after the channels using them are shut down.
+	 */
+	public synchronized void shutdown() {
+		if (eventLoopGroup != null) {
+			eventLoopGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+		}
+		if (domainSocketEventLoopGroup != null && domainSocketEventLoopGroup != eventLoopGroup) {
+			domainSocketEventLoopGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+		}
+	}
+
+	/**
+	 * Domain sockets require an epoll event loop group, which is created on first use unless the shared group is one.
+	 */
+	private synchronized EventLoopGroup domainSocketEventLoopGroup() {
+		if (domainSocketEventLoopGroup == null) {
+			if (epoll && eventLoopGroup != null) {
+				domainSocketEventLoopGroup = eventLoopGroup;
+			}
+			else if (Epoll.isAvailable()) {
+				domainSocketEventLoopGroup = new EpollEventLoopGroup(properties.getEventLoopThreads(), threadFactory());
+			}
+			else {
+				throw new IllegalStateException("Unix domain sockets require the native epoll transport.",
+					Epoll.unavailabilityCause());
+			}
+		}
+		return domainSocketEventLoopGroup;
+	}
+
+	private static DefaultThreadFactory threadFactory() {
+		return new DefaultThreadFactory("grpc-netty", true);
+	}
+
+	private static boolean epollAvailable() {
+		try {
+			if (Epoll.isAvailable()) {
+				return true;
+			}
+			logger.warn("The native epoll transport is not available. Using NIO.", Epoll.unavailabilityCause());
+		}
+		catch (NoClassDefFoundError e) {
+			logger.warn("The native epoll transport is not on the classpath. Using NIO.");
+		}
+		return false;
+	}
+}
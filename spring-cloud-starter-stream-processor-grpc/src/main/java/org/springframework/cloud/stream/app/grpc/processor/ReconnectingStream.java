@@ -0,0 +1,252 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import reactor.core.publisher.EmitterProcessor;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * A bidirectional stream to the sidecar that is re-opened when it fails with {@link Status#UNAVAILABLE}, e.g. because
+ * the sidecar restarted. Requests not yet acknowledged by a response are sent again on the new stream, before any new
+ * requests, so none are lost and their order is kept. Like {@link StreamIdleMonitor}, this assumes one response per
+ * request, in order.
+ * <p>
+ * At most 'replayCapacity' unacknowledged requests are kept. If more are outstanding, the oldest are not replayed.
+ * Stalled streams, failing with a {@link TimeoutException}, are handled as configured by
+ * {@link GrpcProperties#getOnDeadlineExceeded()}: 'retry' re-opens the stream replaying outstanding requests, up to
+ * {@link GrpcProperties#getDeadlineRetries()} consecutive times, and 'drop' re-opens it dropping them. 'error', or
+ * 'retry' once its retries are exhausted, also re-opens it dropping them, but logs an error, so that a stall does not
+ * terminate the binding.
+ *
+ * @param <T> the request type.
+ * @author David Turanski
+ **/
+public class ReconnectingStream<T> {
+
+	private static Log logger = LogFactory.getLog(ReconnectingStream.class);
+
+	private final Flux<T> requests;
+
+	private final int replayCapacity;
+
+	private final Duration backoff;
+
+	private final Duration maxBackoff;
+
+	private final GrpcProperties.DeadlineAction onStall;
+
+	private final int stallRetries;
+
+	private final Deque<T> unacknowledged = new ArrayDeque<>();
+
+	/**
+	 * The number of unacknowledged requests, older than any in {@link #unacknowledged}, that will not be replayed.
+	 */
+	private long overflow;
+
+	private volatile int failures;
+
+	private volatile int stalls;
+
+	private Counter reconnectsCounter;
+
+	private Counter replayedCounter;
+
+	private Counter overflowCounter;
+
+	/**
+	 * @param requests the requests, subscribed to once for all streams.
+	 * @param replayCapacity the maximum number of unacknowledged requests to replay.
+	 * @param backoff the time to wait before re-opening the stream, doubling for consecutive failures.
+	 * @param maxBackoff the maximum time to wait before re-opening the stream.
+	 * @param onStall the action for a stalled stream.
+	 * @param stallRetries the number of consecutive times a stalled stream is re-opened for 'retry'.
+	 */
+	public ReconnectingStream(Flux<T> requests, int replayCapacity, Duration backoff, Duration maxBackoff,
+		GrpcProperties.DeadlineAction onStall, int stallRetries) {
+		this.requests = resubscribable(requests);
+		this.replayCapacity = replayCapacity;
+		this.backoff = backoff;
+		this.maxBackoff = maxBackoff;
+		this.onStall = onStall;
+		this.stallRetries = stallRetries;
+	}
+
+	/**
+	 * Publish 'grpc.processor.stream.reconnects', 'grpc.processor.stream.replayed' (requests sent again),
+	 * 'grpc.processor.stream.replay.overflow' (unacknowledged requests beyond the replay capacity) and
+	 * 'grpc.processor.stream.unacknowledged'.
+	 * @param meterRegistry the registry.
+	 */
+	public void bindTo(MeterRegistry meterRegistry) {
+		bindTo(meterRegistry, Tags.empty());
+	}
+
+	/**
+	 * Publish meters as {@link #bindTo(MeterRegistry)}, with tags identifying the stream.
+	 * @param meterRegistry the registry.
+	 * @param tags the tags.
+	 */
+	public void bindTo(MeterRegistry meterRegistry, Iterable<Tag> tags) {
+		reconnectsCounter = Counter.builder("grpc.processor.stream.reconnects").tags(tags)
+			.description("Streams to the sidecar re-opened after a failure").register(meterRegistry);
+		replayedCounter = Counter.builder("grpc.processor.stream.replayed").tags(tags)
+			.description("Unacknowledged requests sent again on a re-opened stream").register(meterRegistry);
+		overflowCounter = Counter.builder("grpc.processor.stream.replay.overflow").tags(tags)
+			.description("Unacknowledged requests not replayed because the replay capacity was exceeded")
+			.register(meterRegistry);
+		Gauge.builder("grpc.processor.stream.unacknowledged", this, ReconnectingStream::getUnacknowledged).tags(tags)
+			.description("Requests sent without a response").register(meterRegistry);
+	}
+
+	/**
+	 * Open the stream, re-opening it as required.
+	 * @param stream a function sending requests on a new stream and returning its responses.
+	 * @param <R> the response type.
+	 * @return the responses from all streams.
+	 */
+	public <R> Flux<R> connect(Function<Flux<T>, Flux<R>> stream) {
+		return Flux.defer(() -> stream.apply(streamRequests()))
+			.doOnNext(response -> {
+				acknowledge();
+				failures = 0;
+				stalls = 0;
+			})
+			.retryWhen(errors -> errors.concatMap(this::reconnect));
+	}
+
+	public synchronized long getUnacknowledged() {
+		return unacknowledged.size() + overflow;
+	}
+
+	/**
+	 * Subscribes to the requests once, so that each stream may subscribe in turn. Requests arriving in between wait
+	 * for the next stream, with back pressure.
+	 * @param requests the requests.
+	 * @param <T> the request type.
+	 * @return the requests, for one subscriber at a time.
+	 */
+	static <T> Flux<T> resubscribable(Flux<T> requests) {
+		EmitterProcessor<T> processor = EmitterProcessor.create(false);
+		AtomicBoolean subscribed = new AtomicBoolean();
+		return Flux.defer(() -> {
+			if (subscribed.compareAndSet(false, true)) {
+				requests.subscribe(processor);
+			}
+			return processor;
+		});
+	}
+
+	/**
+	 * The requests for a new stream: those not acknowledged on previous streams, then new ones.
+	 */
+	private Flux<T> streamRequests() {
+		List<T> replay;
+		synchronized (this) {
+			replay = new ArrayList<>(unacknowledged);
+		}
+		if (!replay.isEmpty()) {
+			increment(replayedCounter, replay.size());
+		}
+		return Flux.concat(Flux.fromIterable(replay), requests.doOnNext(this::sent));
+	}
+
+	private synchronized void sent(T request) {
+		if (unacknowledged.size() >= replayCapacity) {
+			unacknowledged.poll();
+			overflow++;
+		}
+		unacknowledged.add(request);
+	}
+
+	private synchronized void acknowledge() {
+		if (overflow > 0) {
+			overflow--;
+		}
+		else {
+			unacknowledged.poll();
+		}
+	}
+
+	private Mono<Long> reconnect(Throwable throwable) {
+		if (throwable instanceof TimeoutException) {
+			if (onStall != GrpcProperties.DeadlineAction.retry || stalls++ >= stallRetries) {
+				String message = String.format("Stream stalled with %d outstanding messages. Dropping them and " +
+					"re-opening the stream.", discard());
+				if (onStall == GrpcProperties.DeadlineAction.drop) {
+					logger.warn(message);
+				}
+				else {
+					logger.error(message);
+				}
+			}
+		}
+		else if (Status.fromThrowable(throwable).getCode() != Status.Code.UNAVAILABLE) {
+			return Mono.error(throwable);
+		}
+
+		long lost;
+		synchronized (this) {
+			lost = overflow;
+			overflow = 0;
+		}
+		if (lost > 0) {
+			increment(overflowCounter, lost);
+			logger.warn(String.format("%d unacknowledged messages exceed the replay capacity and are lost", lost));
+		}
+
+		Duration delay = backoff.multipliedBy(1L << Math.min(failures++, 30));
+		if (delay.compareTo(maxBackoff) > 0) {
+			delay = maxBackoff;
+		}
+		logger.warn(String.format("Stream to the sidecar failed, re-opening it in %dms: %s", delay.toMillis(),
+			throwable.getMessage()));
+		increment(reconnectsCounter, 1);
+		return Mono.delay(delay);
+	}
+
+	private synchronized long discard() {
+		long discarded = unacknowledged.size() + overflow;
+		unacknowledged.clear();
+		overflow = 0;
+		return discarded;
+	}
+
+	private static void increment(Counter counter, double amount) {
+		if (counter != null) {
+			counter.increment(amount);
+		}
+	}
+}
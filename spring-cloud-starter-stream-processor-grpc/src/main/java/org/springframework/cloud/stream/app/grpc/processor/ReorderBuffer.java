@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs completion actions in the order their {@link Ticket}s were issued, regardless of the order in which calls
+ * complete. Tickets are sequenced per key, so results for different keys (e.g. partitions) do not wait for each other.
+ * Memory is bounded by the number of outstanding tickets, which callers must limit, e.g. with an
+ * {@link InFlightWindow}: the buffer itself is unbounded.
+ *
+ * @author David Turanski
+ **/
+public class ReorderBuffer {
+
+	private static Log logger = LogFactory.getLog(ReorderBuffer.class);
+
+	private static final Object DEFAULT_KEY = new Object();
+
+	private final Map<Object, Lane> lanes = new HashMap<>();
+
+	private final Timer headOfLineWait;
+
+	private int depth;
+
+	/**
+	 * @param headOfLineWait records the time completed actions wait for earlier ones, may be null.
+	 */
+	public ReorderBuffer(Timer headOfLineWait) {
+		this.headOfLineWait = headOfLineWait;
+	}
+
+	/**
+	 * Issue the next ticket for a key.
+	 * @param key the ordering key, or null to use a single sequence.
+	 * @return the ticket.
+	 */
+	public synchronized Ticket next(Object key) {
+		Object laneKey = key == null ? DEFAULT_KEY : key;
+		Lane lane = lanes.computeIfAbsent(laneKey, k -> new Lane());
+		return new Ticket(laneKey, lane.nextSequence++);
+	}
+
+	/**
+	 * Complete a ticket. The action runs once all actions for earlier tickets with the same key have run. Every
+	 * ticket must be completed, including those of failed calls, or later tickets will never be released.
+	 * @param ticket the ticket.
+	 * @param action the action to run in order.
+	 */
+	public void complete(Ticket ticket, Runnable action) {
+		Lane lane;
+		synchronized (this) {
+			lane = lanes.get(ticket.key);
+			lane.completed.put(ticket.sequence, new Entry(action));
+			depth++;
+			if (lane.draining) {
+				return;
+			}
+			lane.draining = true;
+		}
+		drain(ticket.key, lane);
+	}
+
+	/**
+	 * @return the number of completed actions waiting for earlier ones.
+	 */
+	public synchronized int getDepth() {
+		return depth;
+	}
+
+	private void drain(Object key, Lane lane) {
+		// Only one thread drains a lane at a time, so actions run in order without holding the lock.
+		while (true) {
+			List<Entry> ready = new ArrayList<>();
+			synchronized (this) {
+				Entry entry;
+				while ((entry = lane.completed.remove(lane.head)) != null) {
+					ready.add(entry);
+					lane.head++;
+					depth--;
+				}
+				if (ready.isEmpty()) {
+					lane.draining = false;
+					if (lane.head == lane.nextSequence) {
+						lanes.remove(key);
+					}
+					return;
+				}
+			}
+			for (Entry entry : ready) {
+				if (headOfLineWait != null) {
+					headOfLineWait.record(System.nanoTime() - entry.completedAt, TimeUnit.NANOSECONDS);
+				}
+				try {
+					entry.action.run();
+				}
+				catch (RuntimeException e) {
+					logger.error("Failed to complete an ordered call", e);
+				}
+			}
+		}
+	}
+
+	public static final class Ticket {
+
+		private final Object key;
+
+		private final long sequence;
+
+		private Ticket(Object key, long sequence) {
+			this.key = key;
+			this.sequence = sequence;
+		}
+	}
+
+	private static final class Lane {
+
+		private final Map<Long, Entry> completed = new HashMap<>();
+
+		private long nextSequence;
+
+		private long head;
+
+		private boolean draining;
+	}
+
+	private static final class Entry {
+
+		private final Runnable action;
+
+		private final long completedAt = System.nanoTime();
+
+		private Entry(Runnable action) {
+			this.action = action;
+		}
+	}
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import io.grpc.Context;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.util.Assert;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hedges unary Process calls: if a call has not completed after the hedging delay, the request is sent again and the
+ * first response is used. The other attempts are cancelled. With a {@link ChannelPool}, each attempt of a call goes to
+ * a channel the call has not used yet, while there is one. The delay is fixed, or a percentile of recent attempt
+ * latency. A budget limits hedges to a fraction of calls, so a slow sidecar is not sent twice the load.
+ * <p>
+ * gRPC 1.8 does not support hedging policies in the service config, so hedging is done here.
+ *
+ * @author David Turanski
+ **/
+public class RequestHedger {
+
+	private static final int LATENCY_SAMPLES = 1024;
+
+	private static final int LATENCY_UPDATE_INTERVAL = 128;
+
+	private static final double MAX_TOKENS = 10;
+
+	private final ProcessorGrpc.ProcessorStub processorStub;
+
+	private final ProcessorGrpc.ProcessorStub hedgeStub;
+
+	private final long delayNanos;
+
+	private final double percentile;
+
+	private final int maxHedges;
+
+	private final double budget;
+
+	private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "grpc-hedging");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final long[] latencies = new long[LATENCY_SAMPLES];
+
+	private long latencyCount;
+
+	private volatile long percentileDelayNanos;
+
+	private double tokens = MAX_TOKENS;
+
+	private Counter hedgesCounter;
+
+	private Counter winsCounter;
+
+	private Counter throttledCounter;
+
+	/**
+	 * @param processorStub the stub to call.
+	 * @param delayMillis the time to wait for a response before hedging, until there are enough latency samples if
+	 * a percentile is used.
+	 * @param percentile if > 0, wait for this percentile (e.g. 95.0) of recent call latency before hedging.
+	 * @param maxHedges the maximum number of hedges per call.
+	 * @param budget the maximum ratio of hedges to calls, e.g. 0.1.
+	 */
+	public RequestHedger(ProcessorGrpc.ProcessorStub processorStub, long delayMillis, double percentile,
+		int maxHedges, double budget) {
+		Assert.isTrue(percentile >= 0 && percentile < 100, "'percentile' must be >= 0 and < 100");
+		this.processorStub = processorStub;
+		this.hedgeStub = processorStub.withOption(ConcurrencyLimitingClientInterceptor.NO_WAIT, true);
+		this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+		this.percentile = percentile;
+		this.maxHedges = maxHedges;
+		this.budget = budget;
+	}
+
+	/**
+	 * Publish 'grpc.processor.hedging.hedges', 'grpc.processor.hedging.wins' (hedges completing first) and
+	 * 'grpc.processor.hedging.throttled' (hedges not sent because the budget is exhausted).
+	 * @param meterRegistry the registry.
+	 */
+	public void bindTo(MeterRegistry meterRegistry) {
+		hedgesCounter = Counter.builder("grpc.processor.hedging.hedges").description("Hedged requests sent")
+			.register(meterRegistry);
+		winsCounter = Counter.builder("grpc.processor.hedging.wins")
+			.description("Hedged requests completing before the original").register(meterRegistry);
+		throttledCounter = Counter.builder("grpc.processor.hedging.throttled")
+			.description("Hedged requests not sent because the hedging budget is exhausted").register(meterRegistry);
+	}
+
+	public void process(ProcessorProtos.Message request, StreamObserver<ProcessorProtos.Message> responseObserver) {
+		process(request, responseObserver, false);
+	}
+
+	/**
+	 * @param request the request.
+	 * @param responseObserver the observer of the first response.
+	 * @param noWait true to fail every attempt, rather than the hedges only, if the concurrency limit is reached.
+	 */
+	public void process(ProcessorProtos.Message request, StreamObserver<ProcessorProtos.Message> responseObserver,
+		boolean noWait) {
+		new HedgedCall(request, responseObserver, noWait).start();
+	}
+
+	/**
+	 * Make a blocking call.
+	 * @param request the request.
+	 * @return the response.
+	 */
+	public ProcessorProtos.Message process(ProcessorProtos.Message request) {
+		CompletableFuture<ProcessorProtos.Message> response = new CompletableFuture<>();
+		process(request, new StreamObserver<ProcessorProtos.Message>() {
+
+			@Override
+			public void onNext(ProcessorProtos.Message message) {
+				response.complete(message);
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				response.completeExceptionally(throwable);
+			}
+
+			@Override
+			public void onCompleted() {
+			}
+		});
+
+		try {
+			return response.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw Status.CANCELLED.withDescription("Interrupted waiting for a response").withCause(e)
+				.asRuntimeException();
+		}
+		catch (ExecutionException e) {
+			throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() :
+				Status.fromThrowable(e.getCause()).asRuntimeException();
+		}
+	}
+
+	/**
+	 * @return the current hedging delay in milliseconds.
+	 */
+	public double getDelayMillis() {
+		return delayNanos() / 1e6;
+	}
+
+	public void shutdown() {
+		scheduler.shutdownNow();
+	}
+
+	private long delayNanos() {
+		return percentileDelayNanos > 0 ? percentileDelayNanos : delayNanos;
+	}
+
+	/**
+	 * Record the latency of an attempt, or the time a cancelled attempt had been waiting, so that slow attempts
+	 * keep counting after a faster hedge has won.
+	 */
+	private synchronized void recordLatency(long nanos) {
+		if (percentile <= 0) {
+			return;
+		}
+		latencies[(int) (latencyCount++ % LATENCY_SAMPLES)] = nanos;
+		if (latencyCount % LATENCY_UPDATE_INTERVAL == 0) {
+			long[] samples = Arrays.copyOf(latencies, (int) Math.min(latencyCount, LATENCY_SAMPLES));
+			Arrays.sort(samples);
+			percentileDelayNanos = samples[(int) (samples.length * percentile / 100)];
+		}
+	}
+
+	private synchronized void addToken() {
+		tokens = Math.min(MAX_TOKENS, tokens + budget);
+	}
+
+	private synchronized boolean tryAcquireToken() {
+		if (tokens >= 1) {
+			tokens--;
+			return true;
+		}
+		return false;
+	}
+
+	private static void increment(Counter counter) {
+		if (counter != null) {
+			counter.increment();
+		}
+	}
+
+	private final class HedgedCall {
+
+		private final ProcessorProtos.Message request;
+
+		private final StreamObserver<ProcessorProtos.Message> responseObserver;
+
+		private final boolean noWait;
+
+		private final AtomicBoolean completed = new AtomicBoolean();
+
+		private final AtomicInteger outstanding = new AtomicInteger();
+
+		private final List<Attempt> attempts = new CopyOnWriteArrayList<>();
+
+		private final Set<Integer> usedChannels = ConcurrentHashMap.newKeySet();
+
+		private int hedges;
+
+		private volatile ScheduledFuture<?> hedgeTimer;
+
+		HedgedCall(ProcessorProtos.Message request, StreamObserver<ProcessorProtos.Message> responseObserver,
+			boolean noWait) {
+			this.request = request;
+			this.responseObserver = responseObserver;
+			this.noWait = noWait;
+		}
+
+		void start() {
+			addToken();
+			scheduleHedge();
+			attempt(false);
+		}
+
+		private void scheduleHedge() {
+			if (hedges < maxHedges && !completed.get()) {
+				hedgeTimer = scheduler.schedule(this::hedge, delayNanos(), TimeUnit.NANOSECONDS);
+			}
+		}
+
+		private void hedge() {
+			if (completed.get()) {
+				return;
+			}
+			if (!tryAcquireToken()) {
+				increment(throttledCounter);
+				return;
+			}
+			if (attempt(true)) {
+				hedges++;
+				increment(hedgesCounter);
+				scheduleHedge();
+			}
+		}
+
+		/**
+		 * @return false if the call completed before the attempt was registered, so it was not sent.
+		 */
+		private boolean attempt(boolean hedge) {
+			outstanding.incrementAndGet();
+			Attempt attempt = new Attempt();
+			attempts.add(attempt);
+			// finish() cancels the attempts registered when the call completes; this one may have been too late.
+			if (completed.get()) {
+				outstanding.decrementAndGet();
+				attempt.failed();
+				return false;
+			}
+			ProcessorGrpc.ProcessorStub stub = (hedge || noWait ? hedgeStub : processorStub)
+				.withOption(ChannelPool.USED_CHANNELS, usedChannels);
+			try {
+				attempt.context.run(() -> stub.process(request, new StreamObserver<ProcessorProtos.Message>() {
+
+					private ProcessorProtos.Message response;
+
+					@Override
+					public void onNext(ProcessorProtos.Message message) {
+						response = message;
+					}
+
+					@Override
+					public void onError(Throwable throwable) {
+						attempt.failed();
+						failed(throwable);
+					}
+
+					@Override
+					public void onCompleted() {
+						attempt.done();
+						succeeded(response, hedge);
+					}
+				}));
+			}
+			catch (RuntimeException e) {
+				attempt.failed();
+				failed(e);
+			}
+			return true;
+		}
+
+		private void succeeded(ProcessorProtos.Message response, boolean hedge) {
+			outstanding.decrementAndGet();
+			if (!completed.compareAndSet(false, true)) {
+				return;
+			}
+			finish();
+			if (hedge) {
+				increment(winsCounter);
+			}
+			responseObserver.onNext(response);
+			responseObserver.onCompleted();
+		}
+
+		/**
+		 * The call fails when all attempts have failed; a hedge is not sent after a failure.
+		 */
+		private void failed(Throwable throwable) {
+			if (outstanding.decrementAndGet() > 0 || !completed.compareAndSet(false, true)) {
+				return;
+			}
+			finish();
+			responseObserver.onError(throwable);
+		}
+
+		/**
+		 * Cancel the hedge timer and any attempts in progress.
+		 */
+		private void finish() {
+			ScheduledFuture<?> timer = hedgeTimer;
+			if (timer != null) {
+				timer.cancel(false);
+			}
+			for (Attempt attempt : attempts) {
+				attempt.cancel();
+			}
+		}
+	}
+
+	private final class Attempt {
+
+		private final Context.CancellableContext context = Context.current().withCancellation();
+
+		private final long start = System.nanoTime();
+
+		private final AtomicBoolean done = new AtomicBoolean();
+
+		/**
+		 * Record the latency of a completed attempt.
+		 */
+		void done() {
+			if (done.compareAndSet(false, true)) {
+				recordLatency(System.nanoTime() - start);
+			}
+		}
+
+		void failed() {
+			done.set(true);
+		}
+
+		/**
+		 * Cancel the attempt if it is in progress, recording the time it has been waiting.
+		 */
+		void cancel() {
+			done();
+			context.cancel(null);
+		}
+	}
+}
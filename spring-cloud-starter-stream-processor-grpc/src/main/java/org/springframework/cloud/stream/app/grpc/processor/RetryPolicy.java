@@ -0,0 +1,143 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import io.grpc.Status;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.util.Assert;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides if, and when, a failed call to the sidecar is retried. Calls failing with a retryable status code are
+ * retried up to a maximum number of attempts, after an exponential backoff with jitter.
+ * <p>
+ * A retry budget, shared by all calls, prevents retry storms: each retry takes a token, and each successful call
+ * returns a fraction of one, so retries are limited to that fraction of successful calls once a small reserve is used.
+ * While the sidecar is down nothing succeeds and retries soon stop.
+ *
+ * @author David Turanski
+ **/
+public class RetryPolicy {
+
+	private static final double MAX_TOKENS = 10;
+
+	private final int maxAttempts;
+
+	private final long initialBackoff;
+
+	private final long maxBackoff;
+
+	private final double multiplier;
+
+	private final Set<Status.Code> retryableCodes;
+
+	private final double budget;
+
+	private double tokens = MAX_TOKENS;
+
+	private Counter retriesCounter;
+
+	private Counter throttledCounter;
+
+	/**
+	 * @param maxAttempts the maximum number of attempts, including the first.
+	 * @param initialBackoff the time in milliseconds to wait before the first retry.
+	 * @param maxBackoff the maximum time in milliseconds to wait before a retry.
+	 * @param multiplier the factor by which the backoff grows for each retry.
+	 * @param retryableCodes the status codes of failures to retry.
+	 * @param budget the ratio of retries to successful calls, e.g. 0.1.
+	 */
+	public RetryPolicy(int maxAttempts, long initialBackoff, long maxBackoff, double multiplier,
+		Status.Code[] retryableCodes, double budget) {
+		Assert.isTrue(maxAttempts > 0, "'maxAttempts' must be > 0");
+		Assert.isTrue(multiplier >= 1, "'multiplier' must be >= 1");
+		this.maxAttempts = maxAttempts;
+		this.initialBackoff = initialBackoff;
+		this.maxBackoff = Math.max(initialBackoff, maxBackoff);
+		this.multiplier = multiplier;
+		this.retryableCodes = retryableCodes.length == 0 ? EnumSet.noneOf(Status.Code.class) :
+			EnumSet.copyOf(Arrays.asList(retryableCodes));
+		this.budget = budget;
+	}
+
+	/**
+	 * Publish 'grpc.processor.retries' and 'grpc.processor.retries.throttled' (retries not made because the budget is
+	 * exhausted).
+	 * @param meterRegistry the registry.
+	 */
+	public void bindTo(MeterRegistry meterRegistry) {
+		retriesCounter = Counter.builder("grpc.processor.retries").description("Retried calls to the sidecar")
+			.register(meterRegistry);
+		throttledCounter = Counter.builder("grpc.processor.retries.throttled")
+			.description("Retries not made because the retry budget is exhausted").register(meterRegistry);
+	}
+
+	/**
+	 * @param throwable the call failure.
+	 * @param attempt the number of retries so far.
+	 * @return true if the failure is retryable and attempts remain.
+	 */
+	public boolean isRetryable(Throwable throwable, int attempt) {
+		return attempt + 1 < maxAttempts && retryableCodes.contains(Status.fromThrowable(throwable).getCode());
+	}
+
+	/**
+	 * Take a retry from the budget.
+	 * @param attempt the number of retries so far.
+	 * @return the time in milliseconds to wait before the retry, or -1 if the budget is exhausted.
+	 */
+	public long acquire(int attempt) {
+		synchronized (this) {
+			if (tokens < 1) {
+				if (throttledCounter != null) {
+					throttledCounter.increment();
+				}
+				return -1;
+			}
+			tokens--;
+		}
+		if (retriesCounter != null) {
+			retriesCounter.increment();
+		}
+		return backoff(attempt);
+	}
+
+	/**
+	 * Record a successful call, returning part of a token to the budget.
+	 */
+	public synchronized void onSuccess() {
+		tokens = Math.min(MAX_TOKENS, tokens + budget);
+	}
+
+	/**
+	 * @param attempt the number of retries so far.
+	 * @return the backoff before the next retry, between half and all of the exponential backoff.
+	 */
+	long backoff(int attempt) {
+		double backoff = Math.min(maxBackoff, initialBackoff * Math.pow(multiplier, attempt));
+		return (long) (backoff / 2 + ThreadLocalRandom.current().nextDouble() * backoff / 2);
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+}
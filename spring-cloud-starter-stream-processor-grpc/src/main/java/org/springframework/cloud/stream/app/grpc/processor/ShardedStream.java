@@ -0,0 +1,76 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * Distributes messages over a number of concurrent streams, so throughput is not limited to what one HTTP/2 stream,
+ * with its flow control window, can carry. Messages with a partition key header go to the stream selected by the
+ * key's hash, so messages with the same key are processed in order. Other messages go to each stream in turn.
+ * Responses from all streams are merged as they arrive.
+ *
+ * @author David Turanski
+ **/
+public class ShardedStream {
+
+	private final int parallelism;
+
+	private final String partitionKeyHeader;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	/**
+	 * @param parallelism the number of streams.
+	 * @param partitionKeyHeader the header holding the partition key, or null to distribute messages in turn.
+	 */
+	public ShardedStream(int parallelism, String partitionKeyHeader) {
+		Assert.isTrue(parallelism > 0, "'parallelism' must be > 0");
+		this.parallelism = parallelism;
+		this.partitionKeyHeader = partitionKeyHeader;
+	}
+
+	/**
+	 * @param requests the messages.
+	 * @param stream a function opening a stream, given its index and messages, and returning its responses.
+	 * @param <T> the message payload type.
+	 * @param <R> the response type.
+	 * @return the responses from all streams.
+	 */
+	public <T, R> Flux<R> apply(Flux<Message<T>> requests, BiFunction<Integer, Flux<Message<T>>, Flux<R>> stream) {
+		if (parallelism == 1) {
+			return stream.apply(0, requests);
+		}
+		// A group may only be subscribed once, but a stream may be re-opened.
+		return requests.groupBy(this::shard)
+			.flatMap(shard -> stream.apply(shard.key(), shard.publish().autoConnect()), parallelism);
+	}
+
+	int shard(Message<?> message) {
+		Object key = partitionKeyHeader != null ? message.getHeaders().get(partitionKeyHeader) : null;
+		return Math.floorMod(key != null ? key.hashCode() : next.getAndIncrement(), parallelism);
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+}
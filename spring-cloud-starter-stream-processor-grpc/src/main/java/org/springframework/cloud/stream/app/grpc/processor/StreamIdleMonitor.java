@@ -0,0 +1,90 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An idle deadline for a bidirectional stream, assuming one response per request. The response stream fails with a
+ * {@link TimeoutException} if requests are outstanding and no response has been received for the idle timeout. A
+ * stream with no outstanding requests never times out, however long it is idle.
+ *
+ * @author David Turanski
+ **/
+public class StreamIdleMonitor {
+
+	/**
+	 * A monitor that does not apply a timeout.
+	 */
+	public static final StreamIdleMonitor NONE = new StreamIdleMonitor(null);
+
+	private final Duration idleTimeout;
+
+	private final AtomicLong outstanding = new AtomicLong();
+
+	private volatile long lastActivity = System.nanoTime();
+
+	/**
+	 * @param idleTimeout the maximum time to wait for a response while requests are outstanding, null for no
+	 * limit.
+	 */
+	public StreamIdleMonitor(Duration idleTimeout) {
+		this.idleTimeout = idleTimeout;
+	}
+
+	public <T> Flux<T> requests(Flux<T> requests) {
+		if (idleTimeout == null) {
+			return requests;
+		}
+		return requests.doOnNext(request -> {
+			if (outstanding.getAndIncrement() == 0) {
+				lastActivity = System.nanoTime();
+			}
+		});
+	}
+
+	public <T> Flux<T> responses(Flux<T> responses) {
+		if (idleTimeout == null) {
+			return responses;
+		}
+		return responses.doOnSubscribe(subscription -> {
+			outstanding.set(0);
+			lastActivity = System.nanoTime();
+		}).doOnNext(response -> {
+			outstanding.decrementAndGet();
+			lastActivity = System.nanoTime();
+		}).timeout(deadline(), response -> deadline());
+	}
+
+	public long getOutstanding() {
+		return outstanding.get();
+	}
+
+	/**
+	 * Checks for a stalled stream at intervals of the idle timeout, so it fails within twice the idle timeout.
+	 */
+	private Mono<Long> deadline() {
+		return Flux.interval(idleTimeout)
+			.filter(tick -> outstanding.get() > 0 && System.nanoTime() - lastActivity >= idleTimeout.toNanos())
+			.next();
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.cloud.stream.app.grpc.support.ProtobufMessageBuilder;
+import org.springframework.cloud.stream.app.grpc.test.support.AbstractProcessorTest;
+import org.springframework.cloud.stream.app.grpc.test.support.ProcessorServer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author David Turanski
+ **/
+public class ChannelExecutorsTests extends AbstractProcessorTest {
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		init(new ProcessorServer());
+	}
+
+	@Test
+	public void direct() {
+		assertThat(ChannelExecutors.newExecutor(new GrpcProperties.Executor())).isNull();
+	}
+
+	@Test
+	public void fixed() {
+		GrpcProperties.Executor properties = new GrpcProperties.Executor();
+		properties.setType(GrpcProperties.Executor.Type.fixed);
+		properties.setThreads(2);
+		properties.setQueueCapacity(10);
+		ExecutorService executor = ChannelExecutors.newExecutor(properties);
+		try {
+			assertThat(executor).isInstanceOf(ThreadPoolExecutor.class);
+			assertThat(((ThreadPoolExecutor) executor).getMaximumPoolSize()).isEqualTo(2);
+			assertThat(((ThreadPoolExecutor) executor).getQueue().remainingCapacity()).isEqualTo(10);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void forkJoin() {
+		GrpcProperties.Executor properties = new GrpcProperties.Executor();
+		properties.setType(GrpcProperties.Executor.Type.fork_join);
+		properties.setThreads(3);
+		ExecutorService executor = ChannelExecutors.newExecutor(properties);
+		try {
+			assertThat(executor).isInstanceOf(ForkJoinPool.class);
+			assertThat(((ForkJoinPool) executor).getParallelism()).isEqualTo(3);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void virtual() {
+		GrpcProperties.Executor properties = new GrpcProperties.Executor();
+		properties.setType(GrpcProperties.Executor.Type.virtual);
+		ExecutorService executor = ChannelExecutors.newExecutor(properties);
+		try {
+			assertThat(executor).isNotNull();
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void callbacksRunOnExecutor() throws Exception {
+		GrpcProperties.Executor properties = new GrpcProperties.Executor();
+		properties.setType(GrpcProperties.Executor.Type.fixed);
+		ExecutorService executor = ChannelExecutors.newExecutor(properties);
+		ManagedChannel channel = InProcessChannelBuilder.forName(server.getName()).executor(executor).build();
+		try {
+			CompletableFuture<String> callbackThread = new CompletableFuture<>();
+			ProcessorGrpc.newStub(channel).process(new ProtobufMessageBuilder().withPayload("hello".getBytes()).build(),
+				new StreamObserver<ProcessorProtos.Message>() {
+					@Override
+					public void onNext(ProcessorProtos.Message message) {
+						callbackThread.complete(Thread.currentThread().getName());
+					}
+
+					@Override
+					public void onError(Throwable throwable) {
+						callbackThread.completeExceptionally(throwable);
+					}
+
+					@Override
+					public void onCompleted() {
+					}
+				});
+			assertThat(callbackThread.get(2, TimeUnit.SECONDS)).startsWith("grpc-executor-");
+		}
+		finally {
+			channel.shutdown().awaitTermination(1, TimeUnit.SECONDS);
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.cloud.stream.app.grpc.support.ProtobufMessageBuilder;
+import org.springframework.cloud.stream.app.grpc.test.support.AbstractProcessorTest;
+import org.springframework.cloud.stream.app.grpc.test.support.ProcessorServer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author David Turanski
+ **/
+public class ChannelPoolTests extends AbstractProcessorTest {
+
+	private ChannelPool channelPool;
+
+	private AtomicInteger[] calls;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		init(new ProcessorServer());
+	}
+
+	@After
+	public void shutdown() throws InterruptedException {
+		channelPool.shutdown().awaitTermination(1, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void roundRobin() {
+		channelPool = new ChannelPool(channels(3), ChannelPool.Policy.round_robin);
+		assertThat(channelPool.size()).isEqualTo(3);
+		process(channelPool, 9);
+		assertThat(channelPool.getOutstanding()).isZero();
+		assertThat(calls).extracting(AtomicInteger::get).containsExactly(3, 3, 3);
+	}
+
+	@Test
+	public void leastOutstanding() throws InterruptedException {
+		channelPool = new ChannelPool(channels(3), ChannelPool.Policy.least_outstanding);
+		ProcessorGrpc.ProcessorStub stub = ProcessorGrpc.newStub(channelPool);
+
+		// One open stream on each channel, then close the one on channel 1.
+		List<StreamObserver<ProcessorProtos.Message>> streams = new ArrayList<>();
+		CountDownLatch closed = new CountDownLatch(1);
+		for (int i = 0; i < 3; i++) {
+			streams.add(stub.stream(responseObserver(i == 1 ? closed : new CountDownLatch(1))));
+		}
+		assertThat(channelPool.getOutstanding()).isEqualTo(3);
+		streams.get(1).onCompleted();
+		assertThat(closed.await(1, TimeUnit.SECONDS)).isTrue();
+
+		// Channel 1 is the least loaded, whichever channel the scan starts at.
+		process(channelPool, 3);
+		assertThat(calls).extracting(AtomicInteger::get).containsExactly(1, 4, 1);
+
+		streams.get(0).onCompleted();
+		streams.get(2).onCompleted();
+	}
+
+	private void process(ChannelPool channelPool, int count) {
+		ProcessorGrpc.ProcessorBlockingStub stub = ProcessorGrpc.newBlockingStub(channelPool);
+		for (int i = 0; i < count; i++) {
+			ProcessorProtos.Message response = stub.process(
+				new ProtobufMessageBuilder().withPayload(("hello" + i).getBytes()).build());
+			assertThat(response.getPayload().toStringUtf8()).isEqualTo("HELLO" + i);
+		}
+	}
+
+	private List<ManagedChannel> channels(int size) {
+		calls = new AtomicInteger[size];
+		List<ManagedChannel> channels = new ArrayList<>();
+		for (int i = 0; i < size; i++) {
+			AtomicInteger count = new AtomicInteger();
+			calls[i] = count;
+			ClientInterceptor counter = new ClientInterceptor() {
+				@Override
+				public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+					CallOptions callOptions, Channel next) {
+					count.incrementAndGet();
+					return next.newCall(method, callOptions);
+				}
+			};
+			channels.add(InProcessChannelBuilder.forName(server.getName()).directExecutor().intercept(counter)
+				.build());
+		}
+		return channels;
+	}
+
+	private static StreamObserver<ProcessorProtos.Message> responseObserver(CountDownLatch completed) {
+		return new StreamObserver<ProcessorProtos.Message>() {
+			@Override
+			public void onNext(ProcessorProtos.Message message) {
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				completed.countDown();
+			}
+
+			@Override
+			public void onCompleted() {
+				completed.countDown();
+			}
+		};
+	}
+}
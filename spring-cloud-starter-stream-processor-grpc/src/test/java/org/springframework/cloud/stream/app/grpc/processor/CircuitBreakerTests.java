@@ -0,0 +1,173 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.Status;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import org.junit.Test;
+import org.springframework.cloud.stream.app.grpc.support.ProtobufMessageBuilder;
+import org.springframework.messaging.support.GenericMessage;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author David Turanski
+ **/
+public class CircuitBreakerTests {
+
+	private static final Status.Code[] FAILURE_CODES = { Status.Code.UNAVAILABLE, Status.Code.DEADLINE_EXCEEDED };
+
+	@Test
+	public void opensAfterConsecutiveFailures() {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(3, 10000, FAILURE_CODES);
+		for (int i = 0; i < 2; i++) {
+			assertThat(circuitBreaker.tryAcquire()).isTrue();
+			circuitBreaker.onClose(Status.UNAVAILABLE);
+		}
+		assertThat(circuitBreaker.tryAcquire()).isTrue();
+		circuitBreaker.onClose(Status.OK);
+		for (int i = 0; i < 3; i++) {
+			assertThat(circuitBreaker.tryAcquire()).isTrue();
+			circuitBreaker.onClose(Status.DEADLINE_EXCEEDED);
+		}
+		assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.open);
+		assertThat(circuitBreaker.tryAcquire()).isFalse();
+	}
+
+	@Test
+	public void otherFailuresCountAsSuccess() {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(2, 10000, FAILURE_CODES);
+		for (int i = 0; i < 10; i++) {
+			assertThat(circuitBreaker.tryAcquire()).isTrue();
+			circuitBreaker.onClose(i % 2 == 0 ? Status.UNAVAILABLE : Status.INVALID_ARGUMENT);
+		}
+		assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.closed);
+	}
+
+	@Test
+	public void trialCallClosesCircuit() throws InterruptedException {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(1, 50, FAILURE_CODES);
+		circuitBreaker.tryAcquire();
+		circuitBreaker.onClose(Status.UNAVAILABLE);
+		assertThat(circuitBreaker.tryAcquire()).isFalse();
+
+		Thread.sleep(100);
+		assertThat(circuitBreaker.tryAcquire()).isTrue();
+		assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.half_open);
+		assertThat(circuitBreaker.tryAcquire()).isFalse();
+		circuitBreaker.onClose(Status.OK);
+		assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.closed);
+	}
+
+	@Test
+	public void failedTrialCallReopensCircuit() throws InterruptedException {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(1, 50, FAILURE_CODES);
+		circuitBreaker.tryAcquire();
+		circuitBreaker.onClose(Status.UNAVAILABLE);
+
+		Thread.sleep(100);
+		assertThat(circuitBreaker.tryAcquire()).isTrue();
+		circuitBreaker.onClose(Status.UNAVAILABLE);
+		assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.open);
+		assertThat(circuitBreaker.tryAcquire()).isFalse();
+	}
+
+	@Test
+	public void unfinishedTrialCallIsFollowedByAnother() throws InterruptedException {
+		CircuitBreaker circuitBreaker = new CircuitBreaker(1, 50, FAILURE_CODES);
+		circuitBreaker.tryAcquire();
+		circuitBreaker.onClose(Status.UNAVAILABLE);
+
+		Thread.sleep(100);
+		assertThat(circuitBreaker.tryAcquire()).isTrue();
+		assertThat(circuitBreaker.tryAcquire()).isFalse();
+
+		Thread.sleep(100);
+		assertThat(circuitBreaker.tryAcquire()).isTrue();
+		assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.half_open);
+		circuitBreaker.onClose(Status.OK);
+		assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.closed);
+	}
+
+	@Test
+	public void interceptorRejectsCallsWhileOpen() throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		Server server = InProcessServerBuilder.forName("circuit-breaker")
+			.addService(new ProcessorGrpc.ProcessorImplBase() {
+				@Override
+				public void process(ProcessorProtos.Message request,
+					StreamObserver<ProcessorProtos.Message> responseObserver) {
+					calls.incrementAndGet();
+					responseObserver.onError(Status.UNAVAILABLE.asRuntimeException());
+				}
+			}).build().start();
+		ManagedChannel channel = InProcessChannelBuilder.forName("circuit-breaker").build();
+		try {
+			CircuitBreaker circuitBreaker = new CircuitBreaker(2, 10000, FAILURE_CODES);
+			ProcessorGrpc.ProcessorBlockingStub stub = ProcessorGrpc.newBlockingStub(
+				ClientInterceptors.intercept(channel, new CircuitBreakerClientInterceptor(circuitBreaker)));
+			ProcessorProtos.Message request = new ProtobufMessageBuilder()
+				.fromMessage(new GenericMessage<>("hello".getBytes())).build();
+
+			for (int i = 0; i < 5; i++) {
+				assertThatThrownBy(() -> stub.process(request))
+					.matches(e -> Status.fromThrowable(e).getCode() == Status.Code.UNAVAILABLE);
+			}
+			assertThat(calls.get()).isEqualTo(2);
+			assertThatThrownBy(() -> stub.process(request)).matches(CircuitBreaker::isRejected);
+		}
+		finally {
+			channel.shutdownNow();
+			server.shutdownNow();
+		}
+	}
+
+	@Test
+	public void limiterRejectionDuringTrialKeepsCircuitOpen() throws Exception {
+		ManagedChannel channel = InProcessChannelBuilder.forName("circuit-breaker-limiter").build();
+		try {
+			CircuitBreaker circuitBreaker = new CircuitBreaker(1, 50, FAILURE_CODES);
+			ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 0.2, 1.5);
+			ProcessorGrpc.ProcessorBlockingStub stub = ProcessorGrpc.newBlockingStub(
+				ClientInterceptors.intercept(channel, new ConcurrencyLimitingClientInterceptor(limiter),
+					new CircuitBreakerClientInterceptor(circuitBreaker)))
+				.withOption(ConcurrencyLimitingClientInterceptor.NO_WAIT, true);
+			ProcessorProtos.Message request = new ProtobufMessageBuilder()
+				.fromMessage(new GenericMessage<>("hello".getBytes())).build();
+
+			circuitBreaker.tryAcquire();
+			circuitBreaker.onClose(Status.UNAVAILABLE);
+			assertThat(limiter.tryAcquire()).isTrue();
+
+			Thread.sleep(100);
+			assertThatThrownBy(() -> stub.process(request)).matches(ConcurrencyLimitingClientInterceptor::isRejected);
+			assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.open);
+			assertThat(circuitBreaker.tryAcquire()).isTrue();
+		}
+		finally {
+			channel.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.grpc.Metadata;
+import io.grpc.Server;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.ServerInterceptors;
+import io.grpc.ServerStreamTracer;
+import io.grpc.netty.NettyServerBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cloud.stream.app.grpc.test.support.ProcessorServer;
+import org.springframework.cloud.stream.messaging.Processor;
+import org.springframework.cloud.stream.test.binder.MessageCollector;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs over Netty, as the in-process transport never compresses messages.
+ *
+ * @author David Turanski
+ **/
+public class CompressionTests {
+
+	private static final Metadata.Key<String> MESSAGE_ENCODING = Metadata.Key.of("grpc-encoding",
+		Metadata.ASCII_STRING_MARSHALLER);
+
+	private final List<String> messageEncodings = new CopyOnWriteArrayList<>();
+
+	private final AtomicLong wireSize = new AtomicLong();
+
+	private final AtomicLong uncompressedSize = new AtomicLong();
+
+	private Server server;
+
+	@Before
+	public void setUp() throws Exception {
+		ServerInterceptor encodingRecorder = new ServerInterceptor() {
+
+			@Override
+			public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+				Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+				if (isProcess(call.getMethodDescriptor().getFullMethodName())) {
+					messageEncodings.add(headers.containsKey(MESSAGE_ENCODING) ? headers.get(MESSAGE_ENCODING) :
+						"identity");
+				}
+				return next.startCall(call, headers);
+			}
+		};
+		server = NettyServerBuilder.forAddress(new InetSocketAddress("localhost", 0))
+			.decompressorRegistry(CompressionClientInterceptor.decompressorRegistry())
+			.addStreamTracerFactory(new ServerStreamTracer.Factory() {
+
+				@Override
+				public ServerStreamTracer newServerStreamTracer(String fullMethodName, Metadata headers) {
+					if (!isProcess(fullMethodName)) {
+						return new ServerStreamTracer() {
+						};
+					}
+					return new ServerStreamTracer() {
+
+						@Override
+						public void inboundWireSize(long bytes) {
+							wireSize.addAndGet(bytes);
+						}
+
+						@Override
+						public void inboundUncompressedSize(long bytes) {
+							uncompressedSize.addAndGet(bytes);
+						}
+					};
+				}
+			})
+			.addService(ServerInterceptors.intercept(new ProcessorServer.ProcessorService(), encodingRecorder))
+			.build().start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.shutdown().awaitTermination(1, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void snappy() throws InterruptedException {
+		process("grpc.compression.codec=snappy", "grpc.compression.min-size=0");
+		assertThat(messageEncodings).containsExactly("snappy");
+		assertThat(wireSize.get()).isGreaterThan(0).isLessThan(uncompressedSize.get() / 2);
+	}
+
+	@Test
+	public void gzip() throws InterruptedException {
+		process("grpc.compression.codec=gzip", "grpc.compression.min-size=0");
+		assertThat(messageEncodings).containsExactly("gzip");
+		assertThat(wireSize.get()).isGreaterThan(0).isLessThan(uncompressedSize.get() / 2);
+	}
+
+	@Test
+	public void belowMinSize() throws InterruptedException {
+		process("grpc.compression.codec=snappy", "grpc.compression.min-size=1000000");
+		assertThat(messageEncodings).containsExactly("snappy");
+		// The message is sent as is, despite the call's encoding.
+		assertThat(uncompressedSize.get()).isGreaterThan(4096);
+		assertThat(wireSize.get()).isGreaterThanOrEqualTo(uncompressedSize.get());
+	}
+
+	@Test
+	public void uncompressed() throws InterruptedException {
+		process();
+		assertThat(messageEncodings).containsExactly("identity");
+		assertThat(wireSize.get()).isGreaterThanOrEqualTo(uncompressedSize.get());
+	}
+
+	@Test
+	public void snappyRoundTrip() throws IOException {
+		byte[] payload = new byte[4096];
+		Arrays.fill(payload, (byte) 'x');
+		SnappyCodec codec = new SnappyCodec();
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (OutputStream outputStream = codec.compress(compressed)) {
+			outputStream.write(payload);
+		}
+		assertThat(compressed.size()).isLessThan(payload.length);
+		assertThat(StreamUtils.copyToByteArray(codec.decompress(
+			new ByteArrayInputStream(compressed.toByteArray())))).isEqualTo(payload);
+	}
+
+	private void process(String... properties) throws InterruptedException {
+		byte[] payload = new byte[4096];
+		Arrays.fill(payload, (byte) 'x');
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TestConfiguration.class)
+			.web(WebApplicationType.NONE)
+			.properties("grpc.host=localhost", "grpc.port=" + server.getPort(), "grpc.stub=blocking")
+			.properties(properties)
+			.run()) {
+
+			Processor processor = context.getBean(Processor.class);
+			processor.input().send(MessageBuilder.withPayload(payload).build());
+			Message<?> message = context.getBean(MessageCollector.class).forChannel(processor.output())
+				.poll(2, TimeUnit.SECONDS);
+			assertThat(message).isNotNull();
+			assertThat(message.getPayload().toString()).hasSize(payload.length).matches("X+");
+		}
+	}
+
+	private static boolean isProcess(String fullMethodName) {
+		return fullMethodName.endsWith("/Process");
+	}
+
+	@Configuration
+	@EnableAutoConfiguration
+	@Import(GrpcProcessorConfiguration.class)
+	static class TestConfiguration {
+	}
+}
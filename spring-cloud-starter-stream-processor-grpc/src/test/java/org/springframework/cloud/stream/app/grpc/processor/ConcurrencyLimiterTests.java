@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author David Turanski
+ **/
+public class ConcurrencyLimiterTests {
+
+	private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	@Test
+	public void growsWhileLatencyIsStable() throws InterruptedException {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 100, 0.2, 1.5);
+		saturate(limiter, 200, MILLIS);
+		assertThat(limiter.getLimit()).isGreaterThan(10);
+		assertThat(limiter.getLimit()).isLessThanOrEqualTo(100);
+	}
+
+	@Test
+	public void shrinksWhenLatencyRises() throws InterruptedException {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(50, 1, 100, 0.2, 1.5);
+		saturate(limiter, 100, MILLIS);
+		int limit = limiter.getLimit();
+		saturate(limiter, 20, 10 * MILLIS);
+		assertThat(limiter.getLimit()).isLessThan(limit);
+	}
+
+	@Test
+	public void doesNotGrowWhenUnused() throws InterruptedException {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 1, 100, 0.2, 1.5);
+		for (int i = 0; i < 200; i++) {
+			limiter.acquire();
+			limiter.release(MILLIS, false);
+		}
+		assertThat(limiter.getLimit()).isEqualTo(10);
+	}
+
+	@Test
+	public void shrinksOnDrops() throws InterruptedException {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 2, 100, 0.2, 1.5);
+		for (int i = 0; i < 50; i++) {
+			limiter.acquire();
+			limiter.release(MILLIS, true);
+		}
+		assertThat(limiter.getLimit()).isEqualTo(2);
+		assertThat(limiter.getInFlight()).isZero();
+	}
+
+	@Test
+	public void blocksAtLimit() throws InterruptedException {
+		ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 0.2, 1.5);
+		limiter.acquire();
+		CountDownLatch acquired = new CountDownLatch(1);
+		Thread thread = new Thread(() -> {
+			try {
+				limiter.acquire();
+				acquired.countDown();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		thread.start();
+		assertThat(acquired.await(100, TimeUnit.MILLISECONDS)).isFalse();
+		limiter.release(MILLIS, false);
+		assertThat(acquired.await(1, TimeUnit.SECONDS)).isTrue();
+	}
+
+	/**
+	 * Fill the limit, then complete the calls with the given latency, the given number of times.
+	 */
+	private void saturate(ConcurrencyLimiter limiter, int rounds, long rttNanos) throws InterruptedException {
+		for (int round = 0; round < rounds; round++) {
+			int limit = limiter.getLimit();
+			for (int i = 0; i < limit; i++) {
+				limiter.acquire();
+			}
+			for (int i = 0; i < limit; i++) {
+				limiter.release(rttNanos, false);
+			}
+		}
+	}
+}
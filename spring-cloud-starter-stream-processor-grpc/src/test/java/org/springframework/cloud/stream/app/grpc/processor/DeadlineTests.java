@@ -0,0 +1,183 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.grpc.Channel;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.app.grpc.test.support.AbstractProcessorTest;
+import org.springframework.cloud.stream.app.grpc.test.support.LatencyProcessorServer;
+import org.springframework.cloud.stream.messaging.Processor;
+import org.springframework.cloud.stream.test.binder.MessageCollector;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.integration.channel.PublishSubscribeChannel;
+import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls to a sidecar responding after 500ms, with a 50ms deadline.
+ *
+ * @author David Turanski
+ **/
+@SpringBootTest(classes = DeadlineTests.TestConfiguration.class, webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RunWith(SpringRunner.class)
+public abstract class DeadlineTests extends AbstractProcessorTest {
+
+	@Autowired
+	protected MessageCollector messageCollector;
+
+	@Autowired
+	protected Processor processor;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		init(new LatencyProcessorServer(TimeUnit.MILLISECONDS.toMicros(500)));
+	}
+
+	@TestPropertySource(properties = { "grpc.deadline=50" })
+	public static class BlockingErrorTests extends DeadlineTests {
+
+		@Test
+		public void test() {
+			assertThatThrownBy(() -> processor.input().send(MessageBuilder.withPayload("hello".getBytes()).build()))
+				.isInstanceOf(MessagingException.class);
+		}
+	}
+
+	@TestPropertySource(properties = { "grpc.deadline=50", "grpc.on-deadline-exceeded=drop" })
+	public static class BlockingDropTests extends DeadlineTests {
+
+		@Test
+		public void test() throws InterruptedException {
+			processor.input().send(MessageBuilder.withPayload("hello".getBytes()).build());
+			assertThat(messageCollector.forChannel(processor.output()).poll(1, TimeUnit.SECONDS)).isNull();
+		}
+	}
+
+	@TestPropertySource(properties = { "grpc.deadline=50", "grpc.on-deadline-exceeded=retry",
+		"grpc.deadline-retries=2" })
+	public static class BlockingRetryTests extends DeadlineTests {
+
+		@Test
+		public void test() {
+			long start = System.nanoTime();
+			assertThatThrownBy(() -> processor.input().send(MessageBuilder.withPayload("hello".getBytes()).build()))
+				.isInstanceOf(MessagingException.class);
+			assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(150));
+		}
+	}
+
+	@TestPropertySource(properties = { "grpc.stub=async", "grpc.deadline=50" })
+	public static class AsyncErrorTests extends DeadlineTests {
+
+		@Autowired
+		@Qualifier(IntegrationContextUtils.ERROR_CHANNEL_BEAN_NAME)
+		private PublishSubscribeChannel errorChannel;
+
+		@Autowired
+		private InFlightWindow inFlightWindow;
+
+		@Test
+		public void test() throws Exception {
+			CompletableFuture<Message<?>> error = new CompletableFuture<>();
+			errorChannel.subscribe(error::complete);
+
+			Message<byte[]> request = MessageBuilder.withPayload("hello".getBytes()).build();
+			processor.input().send(request);
+
+			Message<?> errorMessage = error.get(2, TimeUnit.SECONDS);
+			assertThat(errorMessage).isInstanceOf(ErrorMessage.class);
+			assertThat(((MessagingException) errorMessage.getPayload()).getFailedMessage()).isSameAs(request);
+			assertThat(inFlightWindow.getInFlight()).isZero();
+		}
+	}
+
+	@TestPropertySource(properties = { "grpc.stub=async", "grpc.deadline=50",
+		"spring.cloud.stream.bindings.input.group=test" })
+	public static class AsyncBindingErrorTests extends DeadlineTests {
+
+		@Autowired
+		@Qualifier("input.test.errors")
+		private PublishSubscribeChannel bindingErrorChannel;
+
+		@Test
+		public void test() throws Exception {
+			CompletableFuture<Message<?>> error = new CompletableFuture<>();
+			bindingErrorChannel.subscribe(error::complete);
+
+			Message<byte[]> request = MessageBuilder.withPayload("hello".getBytes()).build();
+			processor.input().send(request);
+
+			Message<?> errorMessage = error.get(2, TimeUnit.SECONDS);
+			assertThat(((MessagingException) errorMessage.getPayload()).getFailedMessage()).isSameAs(request);
+		}
+	}
+
+	@TestPropertySource(properties = { "grpc.stub=streaming", "grpc.streaming.idle-timeout=50" })
+	public static class StreamingErrorTests extends DeadlineTests {
+
+		@Test
+		public void test() throws InterruptedException {
+			processor.input().send(MessageBuilder.withPayload("hello".getBytes()).build());
+			// The stream stalls, and is re-opened without the message.
+			assertThat(messageCollector.forChannel(processor.output()).poll(300, TimeUnit.MILLISECONDS)).isNull();
+
+			((LatencyProcessorServer) server).setLatencyMicros(0);
+			processor.input().send(MessageBuilder.withPayload("world".getBytes()).build());
+			Message<?> message = messageCollector.forChannel(processor.output()).poll(2, TimeUnit.SECONDS);
+			assertThat(message.getPayload()).isEqualTo("WORLD");
+		}
+	}
+
+	@Configuration
+	@EnableAutoConfiguration
+	@Import(GrpcProcessorConfiguration.class)
+	static class TestConfiguration {
+		@Bean
+		public Channel channel() {
+			return AbstractProcessorTest.getChannel();
+		}
+
+		/**
+		 * Stands in for the error channel a message channel binder registers for a consumer group.
+		 */
+		@Bean("input.test.errors")
+		@ConditionalOnProperty("spring.cloud.stream.bindings.input.group")
+		public PublishSubscribeChannel bindingErrorChannel() {
+			return new PublishSubscribeChannel();
+		}
+	}
+}
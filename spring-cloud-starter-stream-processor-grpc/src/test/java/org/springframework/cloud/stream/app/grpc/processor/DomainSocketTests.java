@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cloud.stream.app.grpc.test.support.DomainSocketProcessorServer;
+import org.springframework.cloud.stream.messaging.Processor;
+import org.springframework.cloud.stream.test.binder.MessageCollector;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author David Turanski
+ **/
+public class DomainSocketTests {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private DomainSocketProcessorServer server;
+
+	@Before
+	public void setUp() throws Exception {
+		Assume.assumeTrue("Unix domain sockets are not supported", DomainSocketProcessorServer.isSupported());
+		server = new DomainSocketProcessorServer(
+			new File(temporaryFolder.getRoot(), "processor.sock").getAbsolutePath());
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		if (server != null) {
+			server.stop();
+		}
+	}
+
+	@Test
+	public void process() throws InterruptedException {
+		process("grpc.stub=blocking");
+	}
+
+	@Test
+	public void processWithSharedNativeEventLoopGroup() throws InterruptedException {
+		process("grpc.stub=async", "grpc.netty.native-transport=true", "grpc.netty.event-loop-threads=2");
+	}
+
+	private void process(String... properties) throws InterruptedException {
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(TestConfiguration.class)
+			.web(WebApplicationType.NONE)
+			.properties("grpc.address=" + server.getAddress())
+			.properties(properties)
+			.run()) {
+
+			Processor processor = context.getBean(Processor.class);
+			processor.input().send(MessageBuilder.withPayload("hello".getBytes()).build());
+			Message<?> message = context.getBean(MessageCollector.class).forChannel(processor.output())
+				.poll(2, TimeUnit.SECONDS);
+			assertThat(message).isNotNull();
+			assertThat(message.getPayload()).isEqualTo("HELLO");
+		}
+	}
+
+	@Configuration
+	@EnableAutoConfiguration
+	@Import(GrpcProcessorConfiguration.class)
+	static class TestConfiguration {
+	}
+}
@@ -19,6 +19,7 @@ package org.springframework.cloud.stream.app.grpc.processor;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import io.grpc.Channel;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -26,6 +27,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.cloud.stream.app.grpc.test.support.AbstractProcessorTest;
+import org.springframework.cloud.stream.app.grpc.test.support.LatencyProcessorServer;
 import org.springframework.cloud.stream.app.grpc.test.support.ProcessorServer;
 import org.springframework.cloud.stream.messaging.Processor;
 import org.springframework.cloud.stream.test.binder.MessageCollector;
@@ -38,10 +40,14 @@ import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
+import reactor.core.publisher.Flux;
 
+import java.time.Duration;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -82,6 +88,36 @@ public abstract class GrpcProcessorTests extends AbstractProcessorTest {
 		}
 	}
 
+	public static class MetricsProcessorTests extends GrpcProcessorTests {
+
+		@Autowired
+		private MessageCollector messageCollector;
+
+		@Autowired
+		private Processor processor;
+
+		@Autowired
+		private MeterRegistry meterRegistry;
+
+		@Test
+		public void test() throws InterruptedException {
+			doTest(messageCollector, processor);
+
+			assertThat(meterRegistry.get("grpc.processor.calls").tag("stub", "blocking").tag("method", "Process")
+				.tag("status", "OK").timer().count()).isGreaterThanOrEqualTo(1);
+			assertThat(meterRegistry.get("grpc.processor.message.size").tag("method", "Process")
+				.tag("direction", "sent").summary().totalAmount()).isGreaterThan(0);
+			assertThat(meterRegistry.get("grpc.processor.message.size").tag("method", "Process")
+				.tag("direction", "received").summary().totalAmount()).isGreaterThan(0);
+			assertThat(meterRegistry.get("grpc.processor.calls.active").tag("stub", "blocking").gauge().value())
+				.isEqualTo(0);
+			assertThat(meterRegistry.get("grpc.processor.conversion").tag("operation", "toProtobuf").timer().count())
+				.isGreaterThanOrEqualTo(1);
+			assertThat(meterRegistry.get("grpc.processor.conversion").tag("operation", "fromProtobuf").timer().count())
+				.isGreaterThanOrEqualTo(1);
+		}
+	}
+
 	@TestPropertySource(properties = { "grpc.include-headers=true" })
 	public static class ProcessorWithHeadersTests extends GrpcProcessorTests {
 
@@ -103,6 +139,21 @@ public abstract class GrpcProcessorTests extends AbstractProcessorTest {
 		}
 	}
 
+	@TestPropertySource(properties = { "grpc.include-headers=true", "grpc.zero-copy=true" })
+	public static class ZeroCopyProcessorTests extends GrpcProcessorTests {
+
+		@Autowired
+		private MessageCollector messageCollector;
+
+		@Autowired
+		private Processor processor;
+
+		@Test
+		public void test() throws InterruptedException {
+			doTest(messageCollector, processor);
+		}
+	}
+
 	@TestPropertySource(properties = { "grpc.stub=async" })
 	public static class AsyncProcessorTests extends GrpcProcessorTests {
 
@@ -119,6 +170,91 @@ public abstract class GrpcProcessorTests extends AbstractProcessorTest {
 
 	}
 
+	@TestPropertySource(properties = { "grpc.stub=async", "grpc.async.max-in-flight=2" })
+	public static class BoundedAsyncProcessorTests extends GrpcProcessorTests {
+
+		@Autowired
+		private MessageCollector messageCollector;
+
+		@Autowired
+		private Processor processor;
+
+		@Autowired
+		private InFlightWindow inFlightWindow;
+
+		@Test
+		public void test() throws InterruptedException {
+			assertThat(inFlightWindow.getLimit()).isEqualTo(2);
+			for (int i = 0; i < 20; i++) {
+				processor.input().send(MessageBuilder.withPayload(("hello" + i).getBytes()).build());
+			}
+			for (int i = 0; i < 20; i++) {
+				assertThat(messageCollector.forChannel(processor.output()).poll(2, TimeUnit.SECONDS)).isNotNull();
+			}
+			// The permit is released when the call completes, just after the response is sent.
+			for (int i = 0; i < 20 && inFlightWindow.getInFlight() > 0; i++) {
+				Thread.sleep(50);
+			}
+			assertThat(inFlightWindow.getInFlight()).isZero();
+		}
+	}
+
+	@TestPropertySource(properties = { "grpc.stub=async", "grpc.limiter.enabled=true", "grpc.limiter.initial-limit=2" })
+	public static class ConcurrencyLimitedAsyncProcessorTests extends GrpcProcessorTests {
+
+		@Autowired
+		private MessageCollector messageCollector;
+
+		@Autowired
+		private Processor processor;
+
+		@Autowired
+		private ConcurrencyLimiter concurrencyLimiter;
+
+		@Test
+		public void test() throws InterruptedException {
+			for (int i = 0; i < 20; i++) {
+				processor.input().send(MessageBuilder.withPayload(("hello" + i).getBytes()).build());
+			}
+			for (int i = 0; i < 20; i++) {
+				assertThat(messageCollector.forChannel(processor.output()).poll(2, TimeUnit.SECONDS)).isNotNull();
+			}
+			// The permit is released when the call closes, just after the response is sent.
+			for (int i = 0; i < 20 && concurrencyLimiter.getInFlight() > 0; i++) {
+				Thread.sleep(50);
+			}
+			assertThat(concurrencyLimiter.getInFlight()).isZero();
+		}
+	}
+
+	@TestPropertySource(properties = { "grpc.stub=async", "grpc.async.ordered=true", "grpc.async.max-in-flight=8" })
+	public static class OrderedAsyncProcessorTests extends GrpcProcessorTests {
+
+		@Autowired
+		private MessageCollector messageCollector;
+
+		@Autowired
+		private Processor processor;
+
+		@BeforeClass
+		public static void setUp() throws Exception {
+			// Later requests are answered sooner, so calls in flight together complete in reverse order.
+			init(new LatencyProcessorServer(message -> TimeUnit.MILLISECONDS.toMicros(
+				2 * (50 - Integer.parseInt(message.getPayload().toStringUtf8().substring("hello".length()))))));
+		}
+
+		@Test
+		public void test() throws InterruptedException {
+			for (int i = 0; i < 50; i++) {
+				processor.input().send(MessageBuilder.withPayload(("hello" + i).getBytes()).build());
+			}
+			for (int i = 0; i < 50; i++) {
+				Message<?> message = messageCollector.forChannel(processor.output()).poll(2, TimeUnit.SECONDS);
+				assertThat(message.getPayload()).isEqualTo("HELLO" + i);
+			}
+		}
+	}
+
 	@TestPropertySource(properties = { "grpc.stub=streaming" })
 	public static class StreamingProcessorTests extends GrpcProcessorTests {
 
@@ -134,6 +270,127 @@ public abstract class GrpcProcessorTests extends AbstractProcessorTest {
 		}
 	}
 
+	@TestPropertySource(properties = { "grpc.stub=streaming", "grpc.streaming.parallelism=4",
+		"grpc.streaming.partition-key-header=key" })
+	public static class ParallelStreamingProcessorTests extends GrpcProcessorTests {
+
+		@Autowired
+		private MessageCollector messageCollector;
+
+		@Autowired
+		private Processor processor;
+
+		@Test
+		public void test() throws InterruptedException {
+			for (int i = 0; i < 60; i++) {
+				processor.input().send(MessageBuilder.withPayload(("hello" + i).getBytes()).setHeader("key", i % 3)
+					.build());
+			}
+			int[] last = { -1, -1, -1 };
+			for (int i = 0; i < 60; i++) {
+				Message<?> message = messageCollector.forChannel(processor.output()).poll(2, TimeUnit.SECONDS);
+				int n = Integer.parseInt(((String) message.getPayload()).substring("HELLO".length()));
+				assertThat(n).isGreaterThan(last[n % 3]);
+				last[n % 3] = n;
+			}
+		}
+	}
+
+	@TestPropertySource(properties = { "grpc.stub=streaming", "grpc.streaming.request-prefetch=2",
+		"grpc.streaming.request-low-tide=1", "grpc.streaming.request-scheduler=parallel",
+		"grpc.streaming.response-prefetch=4", "grpc.streaming.response-scheduler=elastic" })
+	public static class FlowControlledStreamingProcessorTests extends GrpcProcessorTests {
+
+		@Autowired
+		private MessageCollector messageCollector;
+
+		@Autowired
+		private Processor processor;
+
+		@Autowired
+		private GrpcProperties properties;
+
+		@Test
+		public void test() throws InterruptedException {
+			doTest(messageCollector, processor);
+		}
+
+		@Test
+		public void prefetchLimitsDemand() {
+			GrpcProperties.Streaming streaming = properties.getStreaming();
+			assertThat(demand(streaming.getRequestPrefetch(), streaming.getRequestLowTide(),
+				streaming.getRequestScheduler())).startsWith(2L).allMatch(n -> n <= 2);
+			assertThat(demand(streaming.getResponsePrefetch(), streaming.getResponseLowTide(),
+				streaming.getResponseScheduler())).startsWith(4L).allMatch(n -> n <= 4);
+		}
+
+		/**
+		 * @return the demand signalled upstream while 100 elements pass through a flow controlled flux.
+		 */
+		private static List<Long> demand(int prefetch, int lowTide,
+			GrpcProperties.Streaming.SchedulerType schedulerType) {
+			List<Long> requests = new CopyOnWriteArrayList<>();
+			List<Integer> elements = GrpcProcessorConfiguration.flowControl(Flux.range(0, 100)
+				.doOnRequest(requests::add), prefetch, lowTide, schedulerType)
+				.collectList()
+				.block(Duration.ofSeconds(5));
+			assertThat(elements).hasSize(100).isSorted();
+			return requests;
+		}
+	}
+
+	@TestPropertySource(properties = { "grpc.stub=chunked", "grpc.chunk-size=2", "grpc.include-headers=true" })
+	public static class ChunkedProcessorTests extends GrpcProcessorTests {
+
+		@Autowired
+		private MessageCollector messageCollector;
+
+		@Autowired
+		private Processor processor;
+
+		@Test
+		public void test() throws InterruptedException {
+			doTest(messageCollector, processor);
+		}
+
+		@Test
+		public void largePayload() throws InterruptedException {
+			StringBuilder payload = new StringBuilder();
+			for (int i = 0; i < 10000; i++) {
+				payload.append("hello");
+			}
+			processor.input().send(MessageBuilder.withPayload(payload.toString().getBytes()).build());
+			Message<?> message = messageCollector.forChannel(processor.output()).poll(2, TimeUnit.SECONDS);
+			assertThat(message.getPayload()).isEqualTo(payload.toString().toUpperCase());
+		}
+	}
+
+	@TestPropertySource(properties = { "grpc.stub=batch", "grpc.include-headers=true" })
+	public static class BatchProcessorTests extends GrpcProcessorTests {
+
+		@Autowired
+		private MessageCollector messageCollector;
+
+		@Autowired
+		private Processor processor;
+
+		@Test
+		public void test() throws InterruptedException {
+			doTest(messageCollector, processor);
+		}
+
+		@Test
+		public void outputOrderMatchesInputOrder() throws InterruptedException {
+			for (int i = 0; i < 250; i++) {
+				processor.input().send(MessageBuilder.withPayload(("hello" + i).getBytes()).build());
+			}
+			for (int i = 0; i < 250; i++) {
+				Message<?> message = messageCollector.forChannel(processor.output()).poll(2, TimeUnit.SECONDS);
+				assertThat(message.getPayload()).isEqualTo("HELLO" + i);
+			}
+		}
+	}
+
 	protected void doTest(MessageCollector messageCollector, Processor processor) throws InterruptedException {
 		Map<String, Object> headers = new HashMap<>();
 		headers.put("int", 123);
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.netty.NettyChannelBuilder;
+import io.grpc.netty.NettyServerBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.stream.app.grpc.support.ProtobufMessageBuilder;
+import org.springframework.cloud.stream.app.grpc.test.support.ProcessorServer;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author David Turanski
+ **/
+public class NettyTransportTests {
+
+	private Server server;
+
+	private NettyTransport nettyTransport;
+
+	@Before
+	public void setUp() throws Exception {
+		server = NettyServerBuilder.forAddress(new InetSocketAddress("localhost", 0))
+			.addService(new ProcessorServer.ProcessorService()).build().start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.shutdown().awaitTermination(1, TimeUnit.SECONDS);
+		if (nettyTransport != null) {
+			nettyTransport.shutdown();
+		}
+	}
+
+	@Test
+	public void defaultEventLoopGroup() {
+		nettyTransport = new NettyTransport(new GrpcProperties.Netty());
+		assertThat(nettyTransport.getEventLoopGroup()).isNull();
+		assertThat(nettyTransport.isEpoll()).isFalse();
+		process(nettyTransport);
+	}
+
+	@Test
+	public void sharedEventLoopGroup() {
+		GrpcProperties.Netty properties = new GrpcProperties.Netty();
+		properties.setEventLoopThreads(2);
+		properties.setFlowControlWindow(4 * 1024 * 1024);
+		properties.setKeepAliveTime(30);
+		nettyTransport = new NettyTransport(properties);
+		assertThat(nettyTransport.getEventLoopGroup()).isNotNull();
+		process(nettyTransport);
+	}
+
+	@Test
+	public void nativeTransport() {
+		GrpcProperties.Netty properties = new GrpcProperties.Netty();
+		properties.setNativeTransport(true);
+		nettyTransport = new NettyTransport(properties);
+		// Falls back to the default NIO transport where epoll is not available.
+		assertThat(nettyTransport.getEventLoopGroup() != null).isEqualTo(nettyTransport.isEpoll());
+		process(nettyTransport);
+	}
+
+	private void process(NettyTransport nettyTransport) {
+		ManagedChannel channel = nettyTransport.configure(NettyChannelBuilder.forAddress("localhost", server.getPort()))
+			.usePlaintext(true).build();
+		try {
+			ProcessorProtos.Message response = ProcessorGrpc.newBlockingStub(channel).process(
+				new ProtobufMessageBuilder().withPayload("hello".getBytes()).build());
+			assertThat(response.getPayload().toStringUtf8()).isEqualTo("HELLO");
+		}
+		finally {
+			channel.shutdownNow();
+		}
+	}
+}
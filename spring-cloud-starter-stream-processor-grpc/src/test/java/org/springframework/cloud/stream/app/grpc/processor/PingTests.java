@@ -61,7 +61,7 @@ public class PingTests extends AbstractProcessorTest {
 
 		for (int i = 0; i < 2; i++) {
 			ProcessorProtos.Status status = pingStub.ping(Empty.getDefaultInstance());
-			assertThat(status.getMessage()).isEqualTo("alive");
+			assertThat(status.getMessage()).isEqualTo("UP");
 		}
 
 		try {
@@ -75,8 +75,8 @@ public class PingTests extends AbstractProcessorTest {
 
 	@Test
 	public void healthIndicator() {
-		assertThat(sideCarHealthIndicator.health().getStatus().getCode()).isEqualTo("alive");
-		assertThat(sideCarHealthIndicator.health().getStatus().getCode()).isEqualTo("alive");
+		assertThat(sideCarHealthIndicator.health().getStatus().getCode()).isEqualTo("UP");
+		assertThat(sideCarHealthIndicator.health().getStatus().getCode()).isEqualTo("UP");
 		assertThat(sideCarHealthIndicator.health().getStatus().getCode()).isEqualTo("DOWN");
 	}
 
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author David Turanski
+ **/
+public class ReconnectingStreamTests {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	public void replaysUnacknowledgedRequests() {
+		ReconnectingStream<Integer> stream = reconnectingStream(Flux.range(1, 10), 100,
+			GrpcProperties.DeadlineAction.error);
+		AtomicInteger connections = new AtomicInteger();
+
+		// The first stream fails when it receives 4, without responding to it.
+		List<Integer> responses = stream.connect(requests -> {
+			boolean first = connections.incrementAndGet() == 1;
+			return requests.concatMap(i -> first && i == 4 ?
+				Flux.error(Status.UNAVAILABLE.asRuntimeException()) : Flux.just(i));
+		}).collectList().block(Duration.ofSeconds(5));
+
+		assertThat(responses).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+		assertThat(connections.get()).isEqualTo(2);
+		assertThat(stream.getUnacknowledged()).isZero();
+		assertThat(meterRegistry.get("grpc.processor.stream.reconnects").counter().count()).isEqualTo(1);
+		assertThat(meterRegistry.get("grpc.processor.stream.replayed").counter().count()).isGreaterThanOrEqualTo(1);
+	}
+
+	@Test
+	public void otherFailuresAreNotRetried() {
+		ReconnectingStream<Integer> stream = reconnectingStream(Flux.range(1, 10), 100,
+			GrpcProperties.DeadlineAction.error);
+
+		assertThatThrownBy(() -> stream.connect(requests -> requests.concatMap(i -> i == 4 ?
+			Flux.error(Status.INVALID_ARGUMENT.asRuntimeException()) : Flux.just(i))).blockLast())
+			.matches(e -> Status.fromThrowable(e).getCode() == Status.Code.INVALID_ARGUMENT);
+	}
+
+	@Test
+	public void stalledStreamDropsUnacknowledgedRequests() {
+		ReconnectingStream<Integer> stream = reconnectingStream(Flux.range(1, 10), 100,
+			GrpcProperties.DeadlineAction.drop);
+		AtomicInteger connections = new AtomicInteger();
+
+		List<Integer> responses = stream.connect(requests -> {
+			boolean first = connections.incrementAndGet() == 1;
+			return requests.concatMap(i -> first && i == 4 ? Flux.error(new TimeoutException()) : Flux.just(i));
+		}).collectList().block(Duration.ofSeconds(5));
+
+		// Requests sent on the first stream after 4 are dropped with it; any not yet sent go to the second.
+		assertThat(responses).startsWith(1, 2, 3).doesNotContain(4).isSorted();
+		assertThat(connections.get()).isEqualTo(2);
+		assertThat(stream.getUnacknowledged()).isZero();
+	}
+
+	@Test
+	public void stalledStreamReplaysUnacknowledgedRequests() {
+		ReconnectingStream<Integer> stream = reconnectingStream(Flux.range(1, 10), 100,
+			GrpcProperties.DeadlineAction.retry);
+		StreamIdleMonitor idleMonitor = new StreamIdleMonitor(Duration.ofMillis(50));
+		AtomicInteger connections = new AtomicInteger();
+
+		// The first stream stops responding when it receives 4, without failing.
+		List<Integer> responses = stream.connect(requests -> {
+			boolean first = connections.incrementAndGet() == 1;
+			return idleMonitor.responses(idleMonitor.requests(requests)
+				.concatMap(i -> first && i == 4 ? Flux.<Integer>never() : Flux.just(i)));
+		}).collectList().block(Duration.ofSeconds(5));
+
+		assertThat(responses).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+		assertThat(connections.get()).isEqualTo(2);
+		assertThat(stream.getUnacknowledged()).isZero();
+	}
+
+	@Test
+	public void stalledStreamIsReopenedOnError() {
+		ReconnectingStream<Integer> stream = reconnectingStream(Flux.range(1, 10), 100,
+			GrpcProperties.DeadlineAction.error);
+		AtomicInteger connections = new AtomicInteger();
+
+		List<Integer> responses = stream.connect(requests -> {
+			boolean first = connections.incrementAndGet() == 1;
+			return requests.concatMap(i -> first && i == 4 ? Flux.error(new TimeoutException()) : Flux.just(i));
+		}).collectList().block(Duration.ofSeconds(5));
+
+		assertThat(responses).startsWith(1, 2, 3).doesNotContain(4).isSorted();
+		assertThat(connections.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void replayIsBounded() {
+		ReconnectingStream<Integer> stream = reconnectingStream(Flux.range(1, 10), 2,
+			GrpcProperties.DeadlineAction.error);
+		AtomicInteger connections = new AtomicInteger();
+
+		// The first stream does not respond, and fails when it receives 5.
+		List<Integer> responses = stream.connect(requests -> {
+			boolean first = connections.incrementAndGet() == 1;
+			return first ? requests.concatMap(i -> i == 5 ?
+				Flux.error(Status.UNAVAILABLE.asRuntimeException()) : Flux.<Integer>empty()) : requests;
+		}).collectList().block(Duration.ofSeconds(5));
+
+		double overflow = meterRegistry.get("grpc.processor.stream.replay.overflow").counter().count();
+		assertThat(overflow).isGreaterThanOrEqualTo(3);
+		assertThat(responses).isSorted().doesNotHaveDuplicates().endsWith(9, 10);
+		assertThat(responses.size() + overflow).isEqualTo(10);
+	}
+
+	private ReconnectingStream<Integer> reconnectingStream(Flux<Integer> requests, int replayCapacity,
+		GrpcProperties.DeadlineAction onStall) {
+		ReconnectingStream<Integer> stream = new ReconnectingStream<>(requests, replayCapacity, Duration.ofMillis(1),
+			Duration.ofMillis(10), onStall, 1);
+		stream.bindTo(meterRegistry);
+		return stream;
+	}
+}
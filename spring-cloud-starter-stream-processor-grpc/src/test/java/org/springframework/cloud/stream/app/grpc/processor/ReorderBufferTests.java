@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author David Turanski
+ **/
+public class ReorderBufferTests {
+
+	private final List<String> released = new ArrayList<>();
+
+	@Test
+	public void releasesInTicketOrder() {
+		ReorderBuffer reorderBuffer = new ReorderBuffer(null);
+		ReorderBuffer.Ticket first = reorderBuffer.next(null);
+		ReorderBuffer.Ticket second = reorderBuffer.next(null);
+		ReorderBuffer.Ticket third = reorderBuffer.next(null);
+
+		reorderBuffer.complete(third, () -> released.add("third"));
+		reorderBuffer.complete(second, () -> released.add("second"));
+		assertThat(released).isEmpty();
+		assertThat(reorderBuffer.getDepth()).isEqualTo(2);
+
+		reorderBuffer.complete(first, () -> released.add("first"));
+		assertThat(released).containsExactly("first", "second", "third");
+		assertThat(reorderBuffer.getDepth()).isZero();
+	}
+
+	@Test
+	public void keysAreOrderedIndependently() {
+		ReorderBuffer reorderBuffer = new ReorderBuffer(null);
+		ReorderBuffer.Ticket a1 = reorderBuffer.next("a");
+		ReorderBuffer.Ticket b1 = reorderBuffer.next("b");
+		ReorderBuffer.Ticket a2 = reorderBuffer.next("a");
+
+		reorderBuffer.complete(a2, () -> released.add("a2"));
+		reorderBuffer.complete(b1, () -> released.add("b1"));
+		assertThat(released).containsExactly("b1");
+
+		reorderBuffer.complete(a1, () -> released.add("a1"));
+		assertThat(released).containsExactly("b1", "a1", "a2");
+	}
+}
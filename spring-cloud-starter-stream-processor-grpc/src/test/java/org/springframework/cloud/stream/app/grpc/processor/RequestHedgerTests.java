@@ -0,0 +1,206 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.stub.StreamObserver;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cloud.stream.app.grpc.support.ProtobufMessageBuilder;
+import org.springframework.messaging.support.GenericMessage;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author David Turanski
+ **/
+public class RequestHedgerTests {
+
+	private final AtomicInteger stalled = new AtomicInteger();
+
+	private final AtomicInteger calls = new AtomicInteger();
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private Server server;
+
+	private ManagedChannel channel;
+
+	private RequestHedger requestHedger;
+
+	@Before
+	public void setUp() throws Exception {
+		// Stalled calls never respond, as if the sidecar instance handling them is stuck.
+		server = InProcessServerBuilder.forName("hedging").addService(new ProcessorGrpc.ProcessorImplBase() {
+			@Override
+			public void process(ProcessorProtos.Message request,
+				StreamObserver<ProcessorProtos.Message> responseObserver) {
+				calls.incrementAndGet();
+				if (stalled.getAndDecrement() > 0) {
+					return;
+				}
+				responseObserver.onNext(request);
+				responseObserver.onCompleted();
+			}
+		}).build().start();
+		channel = InProcessChannelBuilder.forName("hedging").build();
+	}
+
+	@After
+	public void tearDown() {
+		requestHedger.shutdown();
+		channel.shutdownNow();
+		server.shutdownNow();
+	}
+
+	@Test
+	public void hedgeWins() {
+		requestHedger = hedger(20, 1.0);
+		stalled.set(1);
+
+		ProcessorProtos.Message response = requestHedger.process(message("hello"));
+
+		assertThat(response.getPayload().toStringUtf8()).isEqualTo("hello");
+		assertThat(calls.get()).isEqualTo(2);
+		assertThat(meterRegistry.get("grpc.processor.hedging.hedges").counter().count()).isEqualTo(1);
+		assertThat(meterRegistry.get("grpc.processor.hedging.wins").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	public void noHedgeForFastCalls() {
+		requestHedger = hedger(1000, 1.0);
+
+		for (int i = 0; i < 10; i++) {
+			requestHedger.process(message("hello"));
+		}
+
+		assertThat(calls.get()).isEqualTo(10);
+		assertThat(meterRegistry.get("grpc.processor.hedging.hedges").counter().count()).isZero();
+	}
+
+	@Test
+	public void budgetLimitsHedges() throws InterruptedException {
+		requestHedger = hedger(10, 0.0);
+		stalled.set(Integer.MAX_VALUE);
+
+		for (int i = 0; i < 12; i++) {
+			requestHedger.process(message("hello"), new NoopObserver());
+		}
+
+		long deadline = System.currentTimeMillis() + 2000;
+		while (meterRegistry.get("grpc.processor.hedging.throttled").counter().count() < 2
+			&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(meterRegistry.get("grpc.processor.hedging.hedges").counter().count()).isEqualTo(10);
+		assertThat(meterRegistry.get("grpc.processor.hedging.throttled").counter().count()).isEqualTo(2);
+	}
+
+	@Test
+	public void hedgeGoesToAnotherPoolChannel() throws Exception {
+		AtomicInteger[] poolCalls = { new AtomicInteger(), new AtomicInteger() };
+		ChannelPool pool = new ChannelPool(Arrays.asList(countingChannel(poolCalls[0]),
+			countingChannel(poolCalls[1])), ChannelPool.Policy.round_robin);
+		try {
+			requestHedger = hedger(ProcessorGrpc.newStub(pool), 200, 1.0);
+			stalled.set(1);
+
+			CompletableFuture<ProcessorProtos.Message> response = new CompletableFuture<>();
+			requestHedger.process(message("hello"), new StreamObserver<ProcessorProtos.Message>() {
+
+				@Override
+				public void onNext(ProcessorProtos.Message message) {
+					response.complete(message);
+				}
+
+				@Override
+				public void onError(Throwable throwable) {
+					response.completeExceptionally(throwable);
+				}
+
+				@Override
+				public void onCompleted() {
+				}
+			});
+			// Another call takes the second channel, so round robin alone would send the hedge to the first again.
+			ProcessorGrpc.newBlockingStub(pool).process(message("other"));
+
+			assertThat(response.get(2, TimeUnit.SECONDS).getPayload().toStringUtf8()).isEqualTo("hello");
+			assertThat(poolCalls[0].get()).isEqualTo(1);
+			assertThat(poolCalls[1].get()).isEqualTo(2);
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	private RequestHedger hedger(long delayMillis, double budget) {
+		return hedger(ProcessorGrpc.newStub(channel), delayMillis, budget);
+	}
+
+	private RequestHedger hedger(ProcessorGrpc.ProcessorStub processorStub, long delayMillis, double budget) {
+		RequestHedger requestHedger = new RequestHedger(processorStub, delayMillis, 0, 1, budget);
+		requestHedger.bindTo(meterRegistry);
+		return requestHedger;
+	}
+
+	private static ManagedChannel countingChannel(AtomicInteger calls) {
+		return InProcessChannelBuilder.forName("hedging").intercept(new ClientInterceptor() {
+
+			@Override
+			public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+				CallOptions callOptions, Channel next) {
+				calls.incrementAndGet();
+				return next.newCall(method, callOptions);
+			}
+		}).build();
+	}
+
+	private static ProcessorProtos.Message message(String payload) {
+		return new ProtobufMessageBuilder().fromMessage(new GenericMessage<>(payload.getBytes())).build();
+	}
+
+	private static class NoopObserver implements StreamObserver<ProcessorProtos.Message> {
+
+		@Override
+		public void onNext(ProcessorProtos.Message value) {
+		}
+
+		@Override
+		public void onError(Throwable t) {
+		}
+
+		@Override
+		public void onCompleted() {
+		}
+	}
+}
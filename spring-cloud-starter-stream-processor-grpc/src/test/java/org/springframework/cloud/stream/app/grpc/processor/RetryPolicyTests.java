@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author David Turanski
+ **/
+public class RetryPolicyTests {
+
+	private static final Status.Code[] UNAVAILABLE = { Status.Code.UNAVAILABLE };
+
+	@Test
+	public void retriesRetryableCodes() {
+		RetryPolicy retryPolicy = new RetryPolicy(3, 100, 1000, 2.0, UNAVAILABLE, 0.1);
+		assertThat(retryPolicy.isRetryable(Status.UNAVAILABLE.asRuntimeException(), 0)).isTrue();
+		assertThat(retryPolicy.isRetryable(Status.UNAVAILABLE.asRuntimeException(), 1)).isTrue();
+		assertThat(retryPolicy.isRetryable(Status.UNAVAILABLE.asRuntimeException(), 2)).isFalse();
+		assertThat(retryPolicy.isRetryable(Status.INVALID_ARGUMENT.asRuntimeException(), 0)).isFalse();
+	}
+
+	@Test
+	public void backoffGrowsToMax() {
+		RetryPolicy retryPolicy = new RetryPolicy(10, 100, 1000, 2.0, UNAVAILABLE, 0.1);
+		for (int i = 0; i < 100; i++) {
+			assertThat(retryPolicy.backoff(0)).isBetween(50L, 100L);
+			assertThat(retryPolicy.backoff(2)).isBetween(200L, 400L);
+			assertThat(retryPolicy.backoff(8)).isBetween(500L, 1000L);
+		}
+	}
+
+	@Test
+	public void budgetLimitsRetries() {
+		RetryPolicy retryPolicy = new RetryPolicy(3, 0, 0, 1.0, UNAVAILABLE, 0.5);
+		for (int i = 0; i < 10; i++) {
+			assertThat(retryPolicy.acquire(0)).isZero();
+		}
+		assertThat(retryPolicy.acquire(0)).isEqualTo(-1);
+
+		retryPolicy.onSuccess();
+		assertThat(retryPolicy.acquire(0)).isEqualTo(-1);
+		retryPolicy.onSuccess();
+		assertThat(retryPolicy.acquire(0)).isZero();
+	}
+
+	@Test
+	public void failureHandlerRetriesBlockingCalls() {
+		CallFailureHandler failureHandler = new CallFailureHandler(GrpcProperties.DeadlineAction.error, 0,
+			new RetryPolicy(3, 1, 10, 2.0, UNAVAILABLE, 0.1));
+		AtomicInteger attempts = new AtomicInteger();
+
+		String response = failureHandler.call(() -> {
+			if (attempts.incrementAndGet() < 3) {
+				throw Status.UNAVAILABLE.asRuntimeException();
+			}
+			return "hello";
+		});
+
+		assertThat(response).isEqualTo("hello");
+		assertThat(attempts.get()).isEqualTo(3);
+	}
+
+	@Test
+	public void failureHandlerGivesUp() {
+		CallFailureHandler failureHandler = new CallFailureHandler(GrpcProperties.DeadlineAction.error, 0,
+			new RetryPolicy(3, 1, 10, 2.0, UNAVAILABLE, 0.1));
+		AtomicInteger attempts = new AtomicInteger();
+
+		assertThatThrownBy(() -> failureHandler.call(() -> {
+			attempts.incrementAndGet();
+			throw Status.UNAVAILABLE.asRuntimeException();
+		})).isInstanceOf(StatusRuntimeException.class);
+		assertThat(attempts.get()).isEqualTo(3);
+	}
+
+	@Test
+	public void rejectedCallsAreNotRetried() {
+		CallFailureHandler failureHandler = new CallFailureHandler(GrpcProperties.DeadlineAction.error, 0,
+			new RetryPolicy(3, 1, 10, 2.0, UNAVAILABLE, 0.1));
+		CircuitBreaker circuitBreaker = new CircuitBreaker(1, 1000, UNAVAILABLE);
+		assertThat(failureHandler.retryDelay(circuitBreaker.rejected().asRuntimeException(), 0)).isEqualTo(-1);
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.grpc.Channel;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.stream.app.grpc.test.support.AbstractProcessorTest;
+import org.springframework.cloud.stream.app.grpc.test.support.RiffProcessorServer;
+import org.springframework.cloud.stream.messaging.Processor;
+import org.springframework.cloud.stream.test.binder.MessageCollector;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author David Turanski
+ **/
+@SpringBootTest(classes = RiffProcessorTests.TestConfiguration.class, webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@RunWith(SpringRunner.class)
+@TestPropertySource(properties = "grpc.stub=riff")
+public abstract class RiffProcessorTests extends AbstractProcessorTest {
+
+	private static final int MESSAGES = 10;
+
+	@Autowired
+	protected MessageCollector messageCollector;
+
+	@Autowired
+	protected Processor processor;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		init(new RiffProcessorServer());
+	}
+
+	public static class CallTests extends RiffProcessorTests {
+
+		@Test
+		public void test() throws InterruptedException {
+			doTest();
+			assertThat(frameSizes()).isEmpty();
+		}
+	}
+
+	@TestPropertySource(properties = { "grpc.riff.bulk=true", "grpc.batch.size=3", "grpc.batch.linger-time=100" })
+	public static class BulkTests extends RiffProcessorTests {
+
+		@Test
+		public void test() throws InterruptedException {
+			doTest();
+			assertThat(frameSizes()).hasSizeGreaterThanOrEqualTo(4).allMatch(size -> size <= 3);
+			assertThat(messagesInFrames()).isEqualTo(MESSAGES);
+		}
+	}
+
+	/**
+	 * Each message is 11 bytes, so frames of 10 messages are cut to 2 messages by size.
+	 */
+	@TestPropertySource(properties = { "grpc.riff.bulk=true", "grpc.batch.size=10", "grpc.batch.max-bytes=25",
+		"grpc.batch.linger-time=500" })
+	public static class BulkMaxBytesTests extends RiffProcessorTests {
+
+		@Test
+		public void test() throws InterruptedException {
+			doTest();
+			assertThat(frameSizes()).hasSizeGreaterThanOrEqualTo(5).allMatch(size -> size <= 2);
+			assertThat(messagesInFrames()).isEqualTo(MESSAGES);
+		}
+	}
+
+	/**
+	 * Send messages, expecting each response once, in order.
+	 */
+	protected void doTest() throws InterruptedException {
+		for (int i = 0; i < MESSAGES; i++) {
+			processor.input().send(MessageBuilder.withPayload(("message-" + i).getBytes()).build());
+		}
+		for (int i = 0; i < MESSAGES; i++) {
+			Message<?> message = messageCollector.forChannel(processor.output()).poll(2, TimeUnit.SECONDS);
+			assertThat(message).isNotNull();
+			assertThat(message.getPayload()).isEqualTo("MESSAGE-" + i);
+		}
+		assertThat(messageCollector.forChannel(processor.output()).poll(100, TimeUnit.MILLISECONDS)).isNull();
+	}
+
+	protected static List<Integer> frameSizes() {
+		return ((RiffProcessorServer) server).getFrameSizes();
+	}
+
+	protected static int messagesInFrames() {
+		return frameSizes().stream().mapToInt(Integer::intValue).sum();
+	}
+
+	@Configuration
+	@EnableAutoConfiguration
+	@Import(GrpcProcessorConfiguration.class)
+	static class TestConfiguration {
+		@Bean
+		public Channel channel() {
+			return AbstractProcessorTest.getChannel();
+		}
+	}
+}
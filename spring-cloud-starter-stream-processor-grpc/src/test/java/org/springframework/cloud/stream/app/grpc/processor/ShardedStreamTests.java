@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.MessageBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * @author David Turanski
+ **/
+public class ShardedStreamTests {
+
+	@Test
+	public void sameKeySameShard() {
+		ShardedStream shardedStream = new ShardedStream(4, "key");
+		for (int i = 0; i < 100; i++) {
+			assertThat(shardedStream.shard(message(i, "key" + (i % 10))))
+				.isEqualTo(shardedStream.shard(message(0, "key" + (i % 10))));
+		}
+	}
+
+	@Test
+	public void roundRobinWithoutKey() {
+		ShardedStream shardedStream = new ShardedStream(4, "key");
+		for (int i = 0; i < 100; i++) {
+			assertThat(shardedStream.shard(message(i, null))).isEqualTo(i % 4);
+		}
+	}
+
+	@Test
+	public void mergesStreamsKeepingKeyOrder() {
+		ShardedStream shardedStream = new ShardedStream(4, "key");
+		Map<Integer, Integer> streams = new ConcurrentHashMap<>();
+
+		List<Message<Integer>> responses = shardedStream.apply(
+			Flux.range(0, 1000).map(i -> message(i, "key" + (i % 7))), (shard, requests) -> {
+				streams.merge(shard, 1, Integer::sum);
+				return requests.publishOn(Schedulers.parallel());
+			}).collectList().block(Duration.ofSeconds(5));
+
+		assertThat(responses).hasSize(1000);
+		assertThat(streams).hasSize(4);
+		assertThat(streams.values()).containsOnly(1);
+		Map<Object, List<Integer>> byKey = responses.stream().collect(
+			Collectors.groupingBy(m -> m.getHeaders().get("key"), Collectors.mapping(Message::getPayload,
+				Collectors.toList())));
+		byKey.values().forEach(payloads -> assertThat(payloads).isSorted());
+	}
+
+	@Test
+	public void singleStream() {
+		ShardedStream shardedStream = new ShardedStream(1, null);
+		List<Integer> shards = shardedStream.apply(Flux.range(0, 10).map(i -> message(i, null)),
+			(shard, requests) -> requests.map(m -> shard)).collectList().block(Duration.ofSeconds(5));
+		assertThat(shards).containsOnly(0).hasSize(10);
+	}
+
+	private static Message<Integer> message(int payload, String key) {
+		return MessageBuilder.withPayload(payload).setHeader("key", key).build();
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018 the original author or authors.
+ *
+ *   Licensed under the Apache License, Version 2.0 (the "License");
+ *   you may not use this file except in compliance with the License.
+ *   You may obtain a copy of the License at
+ *
+ *        https://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package org.springframework.cloud.stream.app.grpc.processor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+import reactor.core.publisher.EmitterProcessor;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * @author David Turanski
+ **/
+public class StreamIdleMonitorTests {
+
+	@Test
+	public void timesOutWithOutstandingRequests() throws Exception {
+		StreamIdleMonitor idleMonitor = new StreamIdleMonitor(Duration.ofMillis(50));
+		CompletableFuture<Throwable> error = new CompletableFuture<>();
+		idleMonitor.responses(Flux.never()).subscribe(response -> {
+		}, error::complete);
+
+		idleMonitor.requests(Flux.just("hello")).blockLast();
+
+		assertThat(error.get(1, TimeUnit.SECONDS)).isInstanceOf(TimeoutException.class);
+	}
+
+	@Test
+	public void doesNotTimeOutWhenIdle() throws Exception {
+		StreamIdleMonitor idleMonitor = new StreamIdleMonitor(Duration.ofMillis(50));
+		EmitterProcessor<String> responses = EmitterProcessor.create();
+		CompletableFuture<Throwable> error = new CompletableFuture<>();
+		idleMonitor.responses(responses).subscribe(response -> {
+		}, error::complete);
+
+		idleMonitor.requests(Flux.just("hello")).blockLast();
+		responses.onNext("HELLO");
+
+		Thread.sleep(200);
+		assertThat(error.isDone()).isFalse();
+		assertThat(idleMonitor.getOutstanding()).isZero();
+	}
+
+	@Test
+	public void none() {
+		Flux<String> requests = Flux.just("hello");
+		assertThat(StreamIdleMonitor.NONE.requests(requests)).isSameAs(requests);
+		assertThat(StreamIdleMonitor.NONE.responses(requests)).isSameAs(requests);
+	}
+}